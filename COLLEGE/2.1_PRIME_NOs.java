@@ -32,37 +32,425 @@
 //     }
 
 // MINE Concept
+// Segmented Sieve of Eratosthenes: only odd numbers are stored, one bit each,
+// and the range is sieved one cache-sized segment at a time, so memory stays
+// bounded no matter how wide [low, up] is.
 import java.util.Scanner;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongConsumer;
 class Prime_no_s
 {
+    // 32 KB of bits per segment (fits in L1 cache), each bit is one odd number
+    static final int SEGMENT_BITS = 32 * 1024 * 8;
+
+    // Largest base prime limit: the base sieve is a boolean[] indexed by int
+    static final int MAX_BASE = Integer.MAX_VALUE - 8;
+
+    // Largest upper bound that can be sieved, the last n with isqrt(n) <= MAX_BASE
+    static final long MAX_UP = (long) MAX_BASE * MAX_BASE + 2L * MAX_BASE;
+
+    // Largest r such that r*r <= n. Compares by division, since r*r overflows
+    // for n near Long.MAX_VALUE.
+    static long isqrt(long n)
+    {
+        if (n < 2)
+            return Math.max(n, 0);
+        long r = (long) Math.sqrt((double) n);
+        while (r > n / r)
+            r--;
+        while (r + 1 <= n / (r + 1))
+            r++;
+        return r;
+    }
+
+    // Sieving primes for a range ending at up
+    static int[] basePrimesUpTo(long up)
+    {
+        if (up > MAX_UP)
+            throw new IllegalArgumentException("Upper bound " + up + " is too large to sieve, the limit is " + MAX_UP);
+        return basePrimes((int) isqrt(up));
+    }
+
+    // All odd primes <= limit, found with a plain sieve (these are the sieving primes)
+    static int[] basePrimes(int limit)
+    {
+        boolean composite[] = new boolean[limit + 1];
+        int count = 0;
+        for (int i = 3; i <= limit; i += 2)
+        {
+            if (!composite[i])
+            {
+                count++;
+                for (long j = (long) i * i; j <= limit; j += 2L * i)
+                    composite[(int) j] = true;
+            }
+        }
+        int primes[] = new int[count];
+        count = 0;
+        for (int i = 3; i <= limit; i += 2)
+        {
+            if (!composite[i])
+                primes[count++] = i;
+        }
+        return primes;
+    }
+
+    // Marks the odd composites of one segment. Bit b stands for start + 2*b,
+    // where start is odd; a set bit means "not prime".
+    static void sieveSegment(long bits[], long start, int nbits, int primes[])
+    {
+        java.util.Arrays.fill(bits, 0, (nbits + 63) >>> 6, 0L);
+        long end = start + 2L * (nbits - 1);
+        for (int p : primes)
+        {
+            long sq = (long) p * p;
+            if (sq > end)
+                break;
+            long m = Math.max(sq, (start + p - 1) / p * p);
+            if ((m & 1) == 0)
+                m += p;
+            for (long b = (m - start) >>> 1; b < nbits; b += p)
+                bits[(int) (b >>> 6)] |= 1L << b;
+        }
+        if (start == 1)
+            bits[0] |= 1L;        // 1 is not a prime
+    }
+
+    // Streams every prime in [low, up] to action, in increasing order
+    static void forEachPrime(long low, long up, LongConsumer action)
+    {
+        if (low < 2)
+            low = 2;
+        if (up < low)
+            return;
+        int primes[] = basePrimesUpTo(up);
+        if (low == 2)
+            action.accept(2);
+
+        long bits[] = new long[SEGMENT_BITS / 64];
+        long start = (low | 1) == low ? low : low + 1;    // first odd number >= low
+
+        while (start <= up)
+        {
+            int nbits = (int) Math.min(SEGMENT_BITS, (up - start) / 2 + 1);
+            sieveSegment(bits, start, nbits, primes);
+            emitSegment(bits, start, nbits, action);
+            if (up - start < 2L * nbits)
+                break;                  // last segment; stepping on could overflow past Long.MAX_VALUE
+            start += 2L * nbits;
+        }
+    }
+
+    // Unmarked bits of word w, with the bits past the end of the segment cleared
+    static long freeBits(long bits[], int w, int nbits)
+    {
+        long free = ~bits[w];
+        if (nbits - w * 64 < 64)
+            free &= (1L << (nbits - w * 64)) - 1;
+        return free;
+    }
+
+    // Passes the primes of an already sieved segment to action
+    static void emitSegment(long bits[], long start, int nbits, LongConsumer action)
+    {
+        for (int w = 0; w * 64 < nbits; w++)
+        {
+            long free = freeBits(bits, w, nbits);
+            while (free != 0)
+            {
+                int b = w * 64 + Long.numberOfTrailingZeros(free);
+                action.accept(start + 2L * b);
+                free &= free - 1;
+            }
+        }
+    }
+
+    // Number of primes in an already sieved segment
+    static int countSegment(long bits[], int nbits)
+    {
+        int count = 0;
+        for (int w = 0; w * 64 < nbits; w++)
+            count += Long.bitCount(freeBits(bits, w, nbits));
+        return count;
+    }
+
+    // Result of sieving a run of segments: the prime count, the primes themselves
+    // (one array per segment, in order) when asked for, and timing of each segment
+    static class Part
+    {
+        long count;
+        List<long[]> primes;
+        int segments;
+        long nanosTotal, nanosMin = Long.MAX_VALUE, nanosMax;
+
+        // Appends a part that comes right after this one in the range
+        void add(Part next)
+        {
+            count += next.count;
+            if (primes != null)
+                primes.addAll(next.primes);
+            segments += next.segments;
+            nanosTotal += next.nanosTotal;
+            nanosMin = Math.min(nanosMin, next.nanosMin);
+            nanosMax = Math.max(nanosMax, next.nanosMax);
+        }
+    }
+
+    // Sieves segments [from, to) of the range on the fork-join pool. Halves are
+    // split until a single segment is left, so every core keeps stealing work.
+    static class SieveTask extends RecursiveTask<Part>
+    {
+        final long first, up;
+        final long from, to;
+        final int primes[];
+        final boolean keep;
+
+        SieveTask(long first, long up, long from, long to, int primes[], boolean keep)
+        {
+            this.first = first;
+            this.up = up;
+            this.from = from;
+            this.to = to;
+            this.primes = primes;
+            this.keep = keep;
+        }
+
+        protected Part compute()
+        {
+            if (to - from > 1)
+            {
+                long mid = (from + to) >>> 1;
+                SieveTask left = new SieveTask(first, up, from, mid, primes, keep);
+                left.fork();
+                Part right = new SieveTask(first, up, mid, to, primes, keep).compute();
+                Part part = left.join();
+                part.add(right);
+                return part;
+            }
+
+            long t0 = System.nanoTime();
+            long start = first + 2L * SEGMENT_BITS * from;
+            int nbits = (int) Math.min(SEGMENT_BITS, (up - start) / 2 + 1);
+            long bits[] = new long[SEGMENT_BITS / 64];
+            sieveSegment(bits, start, nbits, primes);
+
+            Part part = new Part();
+            part.count = countSegment(bits, nbits);
+            if (keep)
+            {
+                long found[] = new long[(int) part.count];
+                int n[] = {0};
+                emitSegment(bits, start, nbits, p -> found[n[0]++] = p);
+                part.primes = new ArrayList<>();
+                part.primes.add(found);
+            }
+            long nanos = System.nanoTime() - t0;
+            part.segments = 1;
+            part.nanosTotal = nanos;
+            part.nanosMin = nanos;
+            part.nanosMax = nanos;
+            return part;
+        }
+    }
+
+    // Sieves [low, up] on the given number of threads and merges the segments in order
+    static Part parallelPrimes(long low, long up, int threads, boolean keep)
+    {
+        if (low < 2)
+            low = 2;
+        Part result = new Part();
+        if (keep)
+            result.primes = new ArrayList<>();
+        if (up < low)
+            return result;
+        if (low == 2)
+        {
+            result.count = 1;
+            if (keep)
+                result.primes.add(new long[] {2});
+        }
+
+        long first = (low | 1) == low ? low : low + 1;
+        if (first > up)
+            return result;
+        long segments = ((up - first) / 2 + 1 + SEGMENT_BITS - 1) / SEGMENT_BITS;
+        int primes[] = basePrimesUpTo(up);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            result.add(pool.invoke(new SieveTask(first, up, 0, segments, primes, keep)));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    // Witnesses that make Miller-Rabin exact for every n < 3.3 * 10^24,
+    // so in particular for every positive long
+    static final long WITNESSES[] = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+
+    // High 64 bits of the unsigned 128-bit product a*b
+    static long mulHighUnsigned(long a, long b)
+    {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    // Montgomery product a*b/2^64 mod n, with a, b < n, n odd, and inv = n^-1 mod 2^64
+    static long montMul(long a, long b, long n, long inv)
+    {
+        long lo = a * b;
+        long hi = mulHighUnsigned(a, b);
+        long m = lo * inv;                          // m*n has the same low word as a*b
+        long t = hi - mulHighUnsigned(m, n);
+        return t < 0 ? t + n : t;
+    }
+
+    // Deterministic Miller-Rabin test for any long, using Montgomery arithmetic
+    // so that no 128-bit division is ever needed
+    static boolean isPrime(long n)
+    {
+        if (n < 2)
+            return false;
+        for (long p : WITNESSES)
+        {
+            if (n % p == 0)
+                return n == p;
+        }
+        if (n < 41 * 41)
+            return true;
+
+        long inv = n;                               // Newton's iteration for n^-1 mod 2^64
+        for (int i = 0; i < 5; i++)
+            inv *= 2 - n * inv;
+        long one = Long.remainderUnsigned(-n, n);   // 2^64 mod n, i.e. 1 in Montgomery form
+        long r2 = one;                              // 2^128 mod n, used to convert into Montgomery form
+        for (int i = 0; i < 64; i++)
+        {
+            r2 <<= 1;
+            if (r2 < 0 || r2 >= n)
+                r2 -= n;
+        }
+        long minusOne = n - one;
+
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>= s;
+
+        for (long a : WITNESSES)
+        {
+            long x = one;
+            long base = montMul(a, r2, n, inv);
+            for (long e = d; e != 0; e >>= 1)
+            {
+                if ((e & 1) != 0)
+                    x = montMul(x, base, n, inv);
+                base = montMul(base, base, n, inv);
+            }
+            if (x == one || x == minusOne)
+                continue;
+            boolean composite = true;
+            for (int i = 1; i < s && composite; i++)
+            {
+                x = montMul(x, x, n, inv);
+                if (x == minusOne)
+                    composite = false;
+            }
+            if (composite)
+                return false;
+        }
+        return true;
+    }
+
+    // Batch form: result[i] = isPrime(values[i]), without allocating anything
+    static void isPrime(long values[], boolean result[])
+    {
+        for (int i = 0; i < values.length; i++)
+            result[i] = isPrime(values[i]);
+    }
+
+    // Usage: java Prime_no_s [--threads N] [--list]
+    //        java Prime_no_s --check N...
+    //   --threads N  sieve on N threads and print timing (N = 0 uses every core)
+    //   --list       with --threads, also print the primes and not just the count
+    //   --check      test each of the given numbers with Miller-Rabin instead
     public static void main(String[]args)
     {
+        if (args.length > 0 && args[0].equals("--check"))
+        {
+            long values[] = new long[args.length - 1];
+            for (int i = 1; i < args.length; i++)
+                values[i - 1] = Long.parseLong(args[i]);
+            boolean result[] = new boolean[values.length];
+            long t0 = System.nanoTime();
+            isPrime(values, result);
+            long nanos = System.nanoTime() - t0;
+            for (int i = 0; i < values.length; i++)
+                System.out.println(values[i] + (result[i] ? " is prime" : " is not prime"));
+            System.out.printf("Checked %d numbers in %.1f us%n", values.length, nanos / 1e3);
+            return;
+        }
+
+        int threads = -1;
+        boolean list = false;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("--threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--list"))
+                list = true;
+        }
+        if (threads == 0)
+            threads = Runtime.getRuntime().availableProcessors();
+
         Scanner sc = new Scanner (System.in);
         System.out.print("Enter lower bound: ");
-        int low = sc.nextInt();
+        long low = sc.nextLong();
         System.out.print("Enter upper bound: ");
-        int up = sc.nextInt();
+        long up = sc.nextLong();
         System.out.println("\n");
-        int i,j,flag;
-        
-        for (i=low;i<=up;i++)
+
+        // Buffered output: one println per prime would be slower than the sieve itself
+        PrintWriter out = new PrintWriter(System.out, false);
+        if (threads > 0)
         {
-            if(i==1 || i==0)
-                continue;
-            
-            flag = 1;
-                
-            for(j=2;j<i;j++)
+            long t0 = System.nanoTime();
+            Part part = parallelPrimes(low, up, threads, list);
+            long wall = System.nanoTime() - t0;
+            if (list)
+            {
+                for (long found[] : part.primes)
+                    for (long p : found)
+                        out.println(p);
+            }
+            out.println("\nTotal primes: " + part.count);
+            out.printf("Threads: %d, segments: %d, wall time: %.3f ms%n", threads, part.segments, wall / 1e6);
+            if (part.segments > 0)
             {
-                if (i%j==0)
-                {
-                    flag = 0;
-                    break;
-                }
+                out.printf("Segment time min/avg/max: %.3f / %.3f / %.3f ms%n", part.nanosMin / 1e6,
+                        part.nanosTotal / 1e6 / part.segments, part.nanosMax / 1e6);
+                // Busy time spread over the wall clock: close to 1.0 means linear scaling
+                out.printf("Parallel efficiency: %.2f%n", (double) part.nanosTotal / wall / threads);
             }
-            if (flag == 1)
-                System.out.println(i);
+            out.flush();
+            sc.close();
+            return;
         }
+
+        long count[] = {0};
+        forEachPrime(low, up, p ->
+        {
+            out.println(p);
+            count[0]++;
+        });
+        out.println("\nTotal primes: " + count[0]);
+        out.flush();
+        sc.close();
     }
 }
-
@@ -1,45 +1,313 @@
+import java.util.Random;
 import java.util.Scanner;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 class NumToWord
 {
-    public void chk(int n, String ch)
+    // Word tables, built once instead of on every call
+    static final String one[] = {""," one"," two"," three"," four"," five"," six"," seven"," eight"," nine"," ten"," eleven"," twelve"," thirteen"," fourteen"," fifteen"," sixteen"," seventeen"," eighteen"," nineteen"};
+
+    static final String ten[] = {" ",""," twenty"," thirty"," forty"," fifty"," sixty"," seventy"," eighty"," ninety"};
+
+    // International scale names for each group of three digits
+    static final String INTERNATIONAL[] = {""," thousand"," million"," billion"," trillion"," quadrillion"," quintillion"};
+
+    // Appends the words for 0 < n < 100 (nothing for 0), each word led by a space
+    static void appendTens(int n, StringBuilder out)
     {
-        String one[] = {"", " one"," two"," three"," four"," five"," six"," seven"," eight"," nine"," ten"," eleven"," twelve"," thirteen"," fourteen"," fifteen"," sixteen"," seventeen"," eighteen"," nineteen"};
+        if(n>19)
+        {
+            out.append(ten[n/10]).append(one[n%10]);
+        }
+        else
+        {
+            out.append(one[n]);
+        }
+    }
 
-        String ten[] = {" ",""," twenty"," thirty"," fourty"," fifty"," sixty"," seventy"," eighty"," ninety"};
-    if(n>19)
+    // Appends the words for 0 <= n < 1000 (nothing for 0), each word led by a space
+    static void appendHundreds(int n, StringBuilder out)
     {
-        System.out.print(ten[n/10]+" "+one[n%10]);
+        if(n>=100)
+        {
+            out.append(one[n/100]).append(" hundred");
+        }
+        appendTens(n%100, out);
     }
-    else
+
+    // Spellings of 0..999 (each word led by a space), filled in the first time
+    // each one is needed, so a conversion is a few array copies
+    static final char CHUNKS[][] = new char[1000][];
+    static boolean useChunks = true;
+    static long chunkHits, chunkMisses, chunkBuildNanos;
+
+    // Appends the words for 0 <= n < 1000 from the chunk table
+    static void appendChunk(int n, StringBuilder out)
     {
-        System.out.print(one[n]);
+        if(!useChunks)
+        {
+            appendHundreds(n, out);
+            return;
+        }
+        char words[] = CHUNKS[n];
+        if(words == null)
+        {
+            long t0 = System.nanoTime();
+            StringBuilder sb = new StringBuilder(32);
+            appendHundreds(n, sb);
+            words = new char[sb.length()];
+            sb.getChars(0, sb.length(), words, 0);
+            CHUNKS[n] = words;
+            chunkMisses++;
+            chunkBuildNanos += System.nanoTime() - t0;
+        }
+        else
+        {
+            chunkHits++;
+        }
+        out.append(words);
     }
 
-    if(n>0)
+    // Prints the words for one group below 100 followed by its scale name
+    public void chk(int n, String ch)
     {
-        System.out.print(ch);
+        StringBuilder sb = new StringBuilder();
+        appendTens(n, sb);
+        if(n>0)
+        {
+            sb.append(ch);
+        }
+        System.out.print(sb);
     }
+
+    // Indian scale: ..., crore, lakh, thousand, hundreds. Anything above 99 crore
+    // is itself spelled in the Indian scale in front of "crore".
+    // n is read as unsigned, so that -Long.MIN_VALUE works too.
+    static void appendIndian(long n, StringBuilder out)
+    {
+        long k = Long.divideUnsigned(n, 1000);
+        if(k>=10000)
+        {
+            appendIndian(k/10000, out);
+            out.append(" crore");
+        }
+        int lakh = (int)(k/100%100), thousand = (int)(k%100);
+        if(lakh>0)
+        {
+            appendChunk(lakh, out);
+            out.append(" lakh");
+        }
+        if(thousand>0)
+        {
+            appendChunk(thousand, out);
+            out.append(" thousand");
+        }
+        appendChunk((int)Long.remainderUnsigned(n, 1000), out);
     }
 
-    public static void main(String[]args)
+    // International scale: groups of three digits with thousand, million, ...
+    // n is read as unsigned, like in appendIndian.
+    static void appendInternational(long n, StringBuilder out)
     {
-        Scanner sc = new Scanner(System.in);
-        System.out.println("Enter a no: ");
-        int n = sc.nextInt();
-        if(n<=0)
+        appendInternational(n, 0, out);
+    }
+
+    // Appends n as groups g and up; the higher groups go first through the
+    // recursion, so no array of groups is needed
+    static void appendInternational(long n, int g, StringBuilder out)
+    {
+        long higher = Long.divideUnsigned(n, 1000);
+        if(higher!=0)
+        {
+            appendInternational(higher, g+1, out);
+        }
+        int group = (int)Long.remainderUnsigned(n, 1000);
+        if(group>0)
         {
-            System.out.println("Enter numbers greater than 0");
+            appendChunk(group, out);
+            out.append(INTERNATIONAL[g]);
+        }
+    }
+
+    // Appends the words for any long to out, without a leading space, and
+    // returns out. Nothing but out is allocated.
+    static StringBuilder appendWords(long n, boolean indian, StringBuilder out)
+    {
+        if(n==0)
+        {
+            return out.append("zero");
+        }
+        int start = out.length();
+        if(n<0)
+        {
+            out.append(" minus");
+            n = -n;
+        }
+        if(indian)
+        {
+            appendIndian(n, out);
         }
         else
         {
-            NumToWord a = new NumToWord();
-            a.chk((n/1000000000)," billion");
-            a.chk((n/10000000)%100," crore");
-            a.chk((n/100000)%100," lakh");
-            a.chk((n/1000)%100," thousand");
-            a.chk((n/100)%10," hundred");
-            a.chk((n%100),"");
+            appendInternational(n, out);
+        }
+        out.deleteCharAt(start);
+        return out;
+    }
+
+    // Writes the words for n and a newline to out through the reused sb and chars;
+    // returns chars, which is only replaced when it is too small
+    static char[] writeWords(long n, boolean indian, StringBuilder sb, char chars[], Writer out) throws IOException
+    {
+        sb.setLength(0);
+        appendWords(n, indian, sb).append('\n');
+        if(sb.length() > chars.length)
+        {
+            chars = new char[sb.length()*2];
+        }
+        sb.getChars(0, sb.length(), chars, 0);
+        out.write(chars, 0, sb.length());
+        return chars;
+    }
+
+    // Reads whitespace or comma separated numbers from in and writes one line of
+    // words per number to out. Numbers are parsed straight from the bytes, so
+    // nothing is allocated per number.
+    static long convertStream(InputStream in, Writer out, boolean indian) throws IOException
+    {
+        byte buf[] = new byte[1 << 16];
+        char chars[] = new char[256];
+        StringBuilder sb = new StringBuilder(256);
+        long value = 0, count = 0;
+        boolean inNumber = false, negative = false;
+        int len;
+        while((len = in.read(buf)) >= 0)
+        {
+            for(int i = 0; i < len; i++)
+            {
+                int b = buf[i];
+                if(b>='0' && b<='9')
+                {
+                    // accumulate negatively so that Long.MIN_VALUE parses too
+                    if(value < (Long.MIN_VALUE + (b-'0'))/10)
+                    {
+                        throw new NumberFormatException("Number too large at record " + (count+1));
+                    }
+                    value = value*10 - (b-'0');
+                    inNumber = true;
+                }
+                else if(b=='-' && !inNumber)
+                {
+                    negative = true;
+                }
+                else if(inNumber)
+                {
+                    if(!negative && value==Long.MIN_VALUE)
+                    {
+                        throw new NumberFormatException("Number too large at record " + (count+1));
+                    }
+                    chars = writeWords(negative ? value : -value, indian, sb, chars, out);
+                    value = 0;
+                    inNumber = false;
+                    negative = false;
+                    count++;
+                }
+                else
+                {
+                    negative = false;
+                }
+            }
         }
+        if(inNumber)
+        {
+            if(!negative && value==Long.MIN_VALUE)
+            {
+                throw new NumberFormatException("Number too large at record " + (count+1));
+            }
+            writeWords(negative ? value : -value, indian, sb, chars, out);
+            count++;
+        }
+        return count;
+    }
+
+    // Times count random conversions with the chunk table against the word by
+    // word path that chk() uses, and prints the table's hit/miss numbers
+    static void benchmark(int count)
+    {
+        Random rnd = new Random(1);
+        long numbers[] = new long[count];
+        for(int i = 0; i < count; i++)
+        {
+            numbers[i] = rnd.nextLong() >> rnd.nextInt(64);
+        }
+        StringBuilder sb = new StringBuilder(256);
+        long chars = 0;
+        for(int round = 0; round < 3; round++)         // first rounds warm up the JIT
+        {
+            for(int mode = 0; mode < 2; mode++)
+            {
+                useChunks = mode == 0;
+                long t0 = System.nanoTime();
+                for(long n : numbers)
+                {
+                    sb.setLength(0);
+                    chars += appendWords(n, round % 2 == 0, sb).length();
+                }
+                long nanos = System.nanoTime() - t0;
+                if(round == 2)
+                {
+                    System.out.printf("%-12s %.1f ns per number%n", useChunks ? "chunk table" : "chk() path", (double) nanos / count);
+                }
+            }
+        }
+        useChunks = true;
+        System.out.printf("Chunk table: %d hits, %d misses, %.3f ms spent building (%d chars written)%n",
+                chunkHits, chunkMisses, chunkBuildNanos / 1e6, chars);
+    }
+
+    // Usage: java NumToWord                          asks for one number
+    //        java NumToWord IN OUT [--international] converts every number in file IN
+    //        java NumToWord --bench [COUNT]          compares the chunk table with chk()'s path
+    public static void main(String[]args) throws IOException
+    {
+        if(args.length >= 1 && args[0].equals("--bench"))
+        {
+            benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 1000000);
+            return;
+        }
+        if(args.length >= 2)
+        {
+            boolean indian = !(args.length > 2 && args[2].equals("--international"));
+            long t0 = System.nanoTime();
+            long count;
+            try(InputStream in = new BufferedInputStream(new FileInputStream(args[0]));
+                Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(args[1]), StandardCharsets.US_ASCII), 1 << 16))
+            {
+                count = convertStream(in, out, indian);
+            }
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            System.out.printf("Converted %d numbers in %.3f s (%.0f numbers/s, %.1f MB/s written)%n", count, seconds,
+                    count / seconds, new File(args[1]).length() / seconds / 1e6);
+            System.out.printf("Chunk table: %d hits, %d misses, %.3f ms spent building%n", chunkHits, chunkMisses,
+                    chunkBuildNanos / 1e6);
+            return;
+        }
+
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Enter a no: ");
+        long n = sc.nextLong();
+        StringBuilder sb = new StringBuilder();
+        System.out.println("Indian:        " + appendWords(n, true, sb));
+        sb.setLength(0);
+        System.out.println("International: " + appendWords(n, false, sb));
         sc.close();
     }
 }
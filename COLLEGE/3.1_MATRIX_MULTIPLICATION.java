@@ -1,26 +1,948 @@
+// Matrices are stored flat in row-major order: element (i, j) of an
+// n x m matrix is at index i*m + j. One double[] per matrix keeps every
+// row next to the following one in memory, unlike int[][].
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
 class MATRIX_MULTIPLICATION
 {
-    public static void main(String[]args)
+    // Tile sizes: a BLOCK_K x BLOCK_J tile of b (64 x 256 doubles = 128 KB) stays
+    // in L2, and the row of it being streamed (2 KB) plus the matching row of c in L1
+    static final int BLOCK_I = 64;
+    static final int BLOCK_K = 64;
+    static final int BLOCK_J = 256;
+
+    // Vector API kernels from MATRIX_SIMD (3.1_MATRIX_SIMD.java). They are only
+    // found when that class was compiled and the jdk.incubator.vector module is
+    // present at run time; otherwise they stay null and the scalar loops are used.
+    static final MethodHandle SIMD_ADD, SIMD_SUB, SIMD_SUM, SIMD_ROWS;
+    static final int SIMD_LANES;
+    static
+    {
+        MethodHandle add = null, sub = null, sum = null, rows = null;
+        int lanes = 1;
+        try
+        {
+            Class<?> simd = Class.forName("MATRIX_SIMD");
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType binary = MethodType.methodType(void.class, double[].class, double[].class, double[].class);
+            add = lookup.findStatic(simd, "add", binary);
+            sub = lookup.findStatic(simd, "sub", binary);
+            sum = lookup.findStatic(simd, "sum", MethodType.methodType(double.class, double[].class));
+            // The tile sizes are bound here, so that MATRIX_SIMD needs nothing from this class
+            rows = lookup.findStatic(simd, "multiplyRows", MethodType.methodType(void.class, double[].class,
+                    double[].class, double[].class, int.class, int.class, int.class, int.class, int.class, int.class,
+                    int.class));
+            rows = MethodHandles.insertArguments(rows, 7, BLOCK_I, BLOCK_K, BLOCK_J);
+            lanes = (int) lookup.findStatic(simd, "lanes", MethodType.methodType(int.class)).invokeExact();
+        }
+        catch (Throwable e)
+        {
+            add = sub = sum = rows = null;
+            lanes = 1;
+        }
+        SIMD_ADD = add;
+        SIMD_SUB = sub;
+        SIMD_SUM = sum;
+        SIMD_ROWS = rows;
+        SIMD_LANES = lanes;
+    }
+
+    // True when the Vector API kernels are in use. They can be turned off with
+    // -Dmatrix.simd=false to compare against the scalar loops.
+    static boolean simd()
+    {
+        return SIMD_ROWS != null && !"false".equals(System.getProperty("matrix.simd"));
+    }
+
+    // The plain i-j-k triple loop, kept as the reference result
+    static double[] multiplyNaive(double a[], double b[], int n, int m, int p)
     {
-        int a[][] = {{0,0,0},{4,5,6},{7,8,9}};
-        int b[][] = {{0,0,0},{4,5,6},{7,8,9}}; 
-        int c[][] = new int[3][3];    
+        double c[] = new double[n * p];
         int i,j,k;
-        for(i=0;i<3;i++)
+        for(i=0;i<n;i++)
         {
-            for(j=0;j<3;j++)
+            for(j=0;j<p;j++)
             {
-                c[i][j] = 0;
-                for(k=0;k<3;k++)
+                double sum = 0;
+                for(k=0;k<m;k++)
                 {
-                    c[i][j] += a[i][k]*b[k][j];
+                    sum += a[i*m+k]*b[k*p+j];
                 }
-                System.out.print(c[i][j]+" ");    
+                c[i*p+j] = sum;
+            }
+        }
+        return c;
+    }
+
+    // c[rowLo..rowHi) += a[rowLo..rowHi) * b
+    static void multiplyRows(double a[], double b[], double c[], int m, int p, int rowLo, int rowHi)
+    {
+        if (simd())
+        {
+            try
+            {
+                SIMD_ROWS.invokeExact(a, b, c, m, p, rowLo, rowHi);
+            }
+            catch (Throwable e)
+            {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+        multiplyRowsScalar(a, b, c, m, p, rowLo, rowHi);
+    }
+
+    // Tiled scalar kernel, with i-k-j order inside a tile so both b and c are
+    // read along their rows
+    static void multiplyRowsScalar(double a[], double b[], double c[], int m, int p, int rowLo, int rowHi)
+    {
+        for (int ii = rowLo; ii < rowHi; ii += BLOCK_I)
+        {
+            int iEnd = Math.min(ii + BLOCK_I, rowHi);
+            for (int kk = 0; kk < m; kk += BLOCK_K)
+            {
+                int kEnd = Math.min(kk + BLOCK_K, m);
+                for (int jj = 0; jj < p; jj += BLOCK_J)
+                {
+                    int jEnd = Math.min(jj + BLOCK_J, p);
+                    for (int i = ii; i < iEnd; i++)
+                    {
+                        int cRow = i * p;
+                        for (int k = kk; k < kEnd; k++)
+                        {
+                            double aik = a[i * m + k];
+                            int bRow = k * p;
+                            for (int j = jj; j < jEnd; j++)
+                                c[cRow + j] += aik * b[bRow + j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Splits the rows of c in halves until a block of BLOCK_I rows is left
+    static class RowTask extends RecursiveAction
+    {
+        final double a[], b[], c[];
+        final int m, p, rowLo, rowHi;
+
+        RowTask(double a[], double b[], double c[], int m, int p, int rowLo, int rowHi)
+        {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.m = m;
+            this.p = p;
+            this.rowLo = rowLo;
+            this.rowHi = rowHi;
+        }
+
+        protected void compute()
+        {
+            if (rowHi - rowLo <= BLOCK_I)
+            {
+                multiplyRows(a, b, c, m, p, rowLo, rowHi);
+                return;
             }
+            int mid = (rowLo + rowHi) >>> 1;
+            invokeAll(new RowTask(a, b, c, m, p, rowLo, mid), new RowTask(a, b, c, m, p, mid, rowHi));
+        }
+    }
+
+    // (n x m) * (m x p) on the common fork-join pool
+    static double[] multiply(double a[], double b[], int n, int m, int p)
+    {
+        return multiply(a, b, n, m, p, ForkJoinPool.commonPool());
+    }
+
+    static double[] multiply(double a[], double b[], int n, int m, int p, ForkJoinPool pool)
+    {
+        if (a.length != n * m || b.length != m * p)
+            throw new IllegalArgumentException("Matrix sizes do not match " + n + "x" + m + " * " + m + "x" + p);
+        double c[] = new double[n * p];
+        pool.invoke(new RowTask(a, b, c, m, p, 0, n));
+        return c;
+    }
+
+    // Below this size Strassen hands over to the tiled kernel
+    static final int STRASSEN_CROSSOVER = 256;
+
+    // Quadrant (r, c) of an n x n matrix, r and c being 0 or 1
+    static double[] quadrant(double x[], int n, int r, int c)
+    {
+        int h = n / 2;
+        double q[] = new double[h * h];
+        for (int i = 0; i < h; i++)
+            System.arraycopy(x, (r * h + i) * n + c * h, q, i * h, h);
+        return q;
+    }
+
+    // Element-wise x + y, for matrices of the same size
+    static double[] add(double x[], double y[])
+    {
+        if (x.length != y.length)
+            throw new IllegalArgumentException("Matrix sizes do not match");
+        double z[] = new double[x.length];
+        if (simd())
+        {
+            try
+            {
+                SIMD_ADD.invokeExact(x, y, z);
+            }
+            catch (Throwable e)
+            {
+                throw new IllegalStateException(e);
+            }
+            return z;
+        }
+        for (int i = 0; i < x.length; i++)
+            z[i] = x[i] + y[i];
+        return z;
+    }
+
+    // Element-wise x - y, for matrices of the same size
+    static double[] sub(double x[], double y[])
+    {
+        if (x.length != y.length)
+            throw new IllegalArgumentException("Matrix sizes do not match");
+        double z[] = new double[x.length];
+        if (simd())
+        {
+            try
+            {
+                SIMD_SUB.invokeExact(x, y, z);
+            }
+            catch (Throwable e)
+            {
+                throw new IllegalStateException(e);
+            }
+            return z;
+        }
+        for (int i = 0; i < x.length; i++)
+            z[i] = x[i] - y[i];
+        return z;
+    }
+
+    // Sum of all elements
+    static double sum(double x[])
+    {
+        if (simd())
+        {
+            try
+            {
+                return (double) SIMD_SUM.invokeExact(x);
+            }
+            catch (Throwable e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+        double sum = 0;
+        for (double v : x)
+            sum += v;
+        return sum;
+    }
+
+    // One Strassen product of two n x n matrices; n is base * 2^k with base no
+    // larger than the crossover, so it halves evenly at every level. The seven sub-products are forked in parallel.
+    static class StrassenTask extends RecursiveTask<double[]>
+    {
+        final double a[], b[];
+        final int n, crossover;
+
+        StrassenTask(double a[], double b[], int n, int crossover)
+        {
+            this.a = a;
+            this.b = b;
+            this.n = n;
+            this.crossover = crossover;
+        }
+
+        protected double[] compute()
+        {
+            if (n <= crossover)
+            {
+                double c[] = new double[n * n];
+                multiplyRows(a, b, c, n, n, 0, n);
+                return c;
+            }
+            int h = n / 2;
+            double a11[] = quadrant(a, n, 0, 0), a12[] = quadrant(a, n, 0, 1);
+            double a21[] = quadrant(a, n, 1, 0), a22[] = quadrant(a, n, 1, 1);
+            double b11[] = quadrant(b, n, 0, 0), b12[] = quadrant(b, n, 0, 1);
+            double b21[] = quadrant(b, n, 1, 0), b22[] = quadrant(b, n, 1, 1);
+
+            StrassenTask m1 = new StrassenTask(add(a11, a22), add(b11, b22), h, crossover);
+            StrassenTask m2 = new StrassenTask(add(a21, a22), b11, h, crossover);
+            StrassenTask m3 = new StrassenTask(a11, sub(b12, b22), h, crossover);
+            StrassenTask m4 = new StrassenTask(a22, sub(b21, b11), h, crossover);
+            StrassenTask m5 = new StrassenTask(add(a11, a12), b22, h, crossover);
+            StrassenTask m6 = new StrassenTask(sub(a21, a11), add(b11, b12), h, crossover);
+            StrassenTask m7 = new StrassenTask(sub(a12, a22), add(b21, b22), h, crossover);
+            invokeAll(m1, m2, m3, m4, m5, m6, m7);
+            double p1[] = m1.join(), p2[] = m2.join(), p3[] = m3.join(), p4[] = m4.join();
+            double p5[] = m5.join(), p6[] = m6.join(), p7[] = m7.join();
+
+            // c11 = m1 + m4 - m5 + m7, c12 = m3 + m5, c21 = m2 + m4, c22 = m1 - m2 + m3 + m6
+            double c[] = new double[n * n];
+            for (int i = 0; i < h; i++)
+            {
+                int top = i * n, bottom = (i + h) * n, q = i * h;
+                for (int j = 0; j < h; j++)
+                {
+                    c[top + j] = p1[q + j] + p4[q + j] - p5[q + j] + p7[q + j];
+                    c[top + h + j] = p3[q + j] + p5[q + j];
+                    c[bottom + j] = p2[q + j] + p4[q + j];
+                    c[bottom + h + j] = p1[q + j] - p2[q + j] + p3[q + j] + p6[q + j];
+                }
+            }
+            return c;
+        }
+    }
+
+    // n x n product by Strassen's method, padding with zeros up to base * 2^k
+    static double[] multiplyStrassen(double a[], double b[], int n, int crossover, ForkJoinPool pool)
+    {
+        if (a.length != n * n || b.length != n * n)
+            throw new IllegalArgumentException("Strassen needs two " + n + "x" + n + " matrices");
+        if (crossover < 1)
+            throw new IllegalArgumentException("Crossover must be positive: " + crossover);
+        int base = n, levels = 0;
+        while (base > crossover)
+        {
+            base = (base + 1) / 2;
+            levels++;
+        }
+        int size = base << levels;
+        if (size == n)
+            return pool.invoke(new StrassenTask(a, b, n, crossover));
+
+        double pa[] = new double[size * size], pb[] = new double[size * size];
+        for (int i = 0; i < n; i++)
+        {
+            System.arraycopy(a, i * n, pa, i * size, n);
+            System.arraycopy(b, i * n, pb, i * size, n);
+        }
+        double pc[] = pool.invoke(new StrassenTask(pa, pb, size, crossover));
+        double c[] = new double[n * n];
+        for (int i = 0; i < n; i++)
+            System.arraycopy(pc, i * size, c, i * n, n);
+        return c;
+    }
+
+    // Times the tiled kernel against Strassen for n = 128, 256, ... up to maxN
+    // and reports the first size where Strassen is faster
+    static void strassenBenchmark(int maxN, int crossover, ForkJoinPool pool)
+    {
+        int winner = -1;
+        System.out.println("     n   tiled (s)   strassen (s)   max difference");
+        for (int n = 128; n <= maxN; n *= 2)
+        {
+            double a[] = randomMatrix(n, n, 1);
+            double b[] = randomMatrix(n, n, 2);
+            multiply(a, b, n, n, n, pool);             // warm-up for the JIT
+            multiplyStrassen(a, b, n, crossover, pool);
+
+            long t0 = System.nanoTime();
+            double c1[] = multiply(a, b, n, n, n, pool);
+            long t1 = System.nanoTime();
+            double c2[] = multiplyStrassen(a, b, n, crossover, pool);
+            long t2 = System.nanoTime();
+
+            System.out.printf("%6d   %9.3f   %12.3f   %.2e%n", n, (t1 - t0) / 1e9, (t2 - t1) / 1e9, maxDifference(c1, c2));
+            if (winner < 0 && t2 - t1 < t1 - t0)
+                winner = n;
+        }
+        if (winner > 0)
+            System.out.println("Strassen (crossover " + crossover + ") beats the tiled kernel from n = " + winner);
+        else
+            System.out.println("Strassen (crossover " + crossover + ") did not beat the tiled kernel up to n = " + maxN);
+    }
+
+    static double[] randomMatrix(int rows, int cols, long seed)
+    {
+        Random rnd = new Random(seed);
+        double x[] = new double[rows * cols];
+        for (int i = 0; i < x.length; i++)
+            x[i] = rnd.nextDouble() - 0.5;
+        return x;
+    }
+
+    static double maxDifference(double x[], double y[])
+    {
+        double max = 0;
+        for (int i = 0; i < x.length; i++)
+            max = Math.max(max, Math.abs(x[i] - y[i]));
+        return max;
+    }
+
+    static void print(double c[], int rows, int cols)
+    {
+        for (int i = 0; i < rows; i++)
+        {
+            for (int j = 0; j < cols; j++)
+                System.out.print((long) c[i * cols + j] + " ");
             System.out.println();
         }
     }
-}
 
+    // A matrix kept in a memory-mapped file instead of on the heap, for matrices
+    // bigger than memory. The file is a grid of tile x tile blocks stored one
+    // after another, tile row by tile row; each block is row-major and
+    // zero-padded at the edges, so a tile is one contiguous run of the mapping.
+    // The file is mapped once, in segments of whole tiles of at most 2 GB each
+    // (a single mapping cannot be bigger), and tiles are copied in and out of
+    // those with absolute bulk gets and puts. Mapping per tile instead would
+    // leave one mapping behind per call until the GC got to it, and a big
+    // product would run past the kernel's limit (vm.max_map_count).
+    static class MappedMatrix implements Closeable
+    {
+        final int rows, cols, tile;
+        final int tileRows, tileCols;
+        final FileChannel channel;
+        final int tilesPerSegment;
+        final MappedByteBuffer segments[];
+        final DoubleBuffer views[];                 // native-order double views of segments
+
+        private MappedMatrix(FileChannel channel, int rows, int cols, int tile) throws IOException
+        {
+            this.channel = channel;
+            this.rows = rows;
+            this.cols = cols;
+            this.tile = tile;
+            this.tileRows = (rows + tile - 1) / tile;
+            this.tileCols = (cols + tile - 1) / tile;
+            long tiles = (long) tileRows * tileCols;
+            this.tilesPerSegment = (int) Math.max(1, Math.min(tiles, Integer.MAX_VALUE / tileBytes()));
+            this.segments = new MappedByteBuffer[(int) ((tiles + tilesPerSegment - 1) / tilesPerSegment)];
+            this.views = new DoubleBuffer[segments.length];
+            for (int s = 0; s < segments.length; s++)
+            {
+                long first = (long) s * tilesPerSegment;
+                segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, first * tileBytes(),
+                        Math.min(tilesPerSegment, tiles - first) * tileBytes());
+                views[s] = segments[s].order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+        }
+
+        long tileBytes()
+        {
+            return (long) tile * tile * Double.BYTES;
+        }
+
+        long fileBytes()
+        {
+            return fileBytes(rows, cols, tile);
+        }
+
+        static long fileBytes(int rows, int cols, int tile)
+        {
+            return (long) ((rows + tile - 1) / tile) * ((cols + tile - 1) / tile) * tile * tile * Double.BYTES;
+        }
+
+        // Creates (or overwrites) a zero matrix in file
+        static MappedMatrix create(Path file, int rows, int cols, int tile) throws IOException
+        {
+            if ((long) tile * tile * Double.BYTES > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Tile too large to map: " + tile);
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            try
+            {
+                channel.write(ByteBuffer.allocate(1), fileBytes(rows, cols, tile) - 1);   // grows the file, holes read as zero
+                return new MappedMatrix(channel, rows, cols, tile);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                channel.close();
+                throw e;
+            }
+        }
+
+        // Opens a matrix written earlier by create with the same shape and tile size
+        static MappedMatrix open(Path file, int rows, int cols, int tile) throws IOException
+        {
+            if ((long) tile * tile * Double.BYTES > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Tile too large to map: " + tile);
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try
+            {
+                if (channel.size() != fileBytes(rows, cols, tile))      // checked first: mapping past the end grows the file
+                    throw new IOException(file + " does not hold a " + rows + "x" + cols + " matrix with tile " + tile);
+                return new MappedMatrix(channel, rows, cols, tile);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                channel.close();
+                throw e;
+            }
+        }
+
+        // Tile (ti, tj) is in views[t / tilesPerSegment], starting at double
+        // (t % tilesPerSegment) * tile * tile, where t is this number
+        long tileIndex(int ti, int tj)
+        {
+            return (long) ti * tileCols + tj;
+        }
+
+        void readTile(int ti, int tj, double buf[])
+        {
+            long t = tileIndex(ti, tj);
+            views[(int) (t / tilesPerSegment)].get((int) (t % tilesPerSegment) * tile * tile, buf, 0, tile * tile);
+        }
+
+        void writeTile(int ti, int tj, double buf[])
+        {
+            long t = tileIndex(ti, tj);
+            views[(int) (t / tilesPerSegment)].put((int) (t % tilesPerSegment) * tile * tile, buf, 0, tile * tile);
+        }
+
+        double get(int i, int j)
+        {
+            long t = tileIndex(i / tile, j / tile);
+            return views[(int) (t / tilesPerSegment)].get((int) (t % tilesPerSegment) * tile * tile
+                    + (i % tile) * tile + j % tile);
+        }
+
+        // Flushes what was written and closes the file; the mappings go away
+        // when they are collected
+        public void close() throws IOException
+        {
+            for (MappedByteBuffer s : segments)
+                s.force();
+            channel.close();
+        }
+    }
+
+    // c = a * b for file-backed matrices. Only one tile of each of a, b and c is
+    // on the heap at a time; each tile product runs on the fork-join pool.
+    static void multiply(MappedMatrix a, MappedMatrix b, MappedMatrix c, ForkJoinPool pool)
+    {
+        int t = a.tile;
+        if (a.cols != b.rows || c.rows != a.rows || c.cols != b.cols)
+            throw new IllegalArgumentException("Matrix sizes do not match " + a.rows + "x" + a.cols + " * " + b.rows + "x" + b.cols);
+        if (b.tile != t || c.tile != t)
+            throw new IllegalArgumentException("All three matrices need the same tile size");
+
+        double aTile[] = new double[t * t], bTile[] = new double[t * t], cTile[] = new double[t * t];
+        for (int ti = 0; ti < c.tileRows; ti++)
+        {
+            for (int tj = 0; tj < c.tileCols; tj++)
+            {
+                Arrays.fill(cTile, 0);
+                for (int tk = 0; tk < a.tileCols; tk++)
+                {
+                    a.readTile(ti, tk, aTile);
+                    b.readTile(tk, tj, bTile);
+                    pool.invoke(new RowTask(aTile, bTile, cTile, t, t, 0, t));
+                }
+                c.writeTile(ti, tj, cTile);
+            }
+        }
+    }
+
+    // Fills a file-backed matrix with random values, one tile at a time
+    static void fillRandom(MappedMatrix x, long seed)
+    {
+        Random rnd = new Random(seed);
+        double buf[] = new double[x.tile * x.tile];
+        for (int ti = 0; ti < x.tileRows; ti++)
+        {
+            for (int tj = 0; tj < x.tileCols; tj++)
+            {
+                Arrays.fill(buf, 0);
+                for (int i = 0; i < x.tile && ti * x.tile + i < x.rows; i++)
+                    for (int j = 0; j < x.tile && tj * x.tile + j < x.cols; j++)
+                        buf[i * x.tile + j] = rnd.nextDouble() - 0.5;
+                x.writeTile(ti, tj, buf);
+            }
+        }
+    }
+
+    // Multiplies two random n x n file-backed matrices stored in dir
+    static void mappedBenchmark(int n, Path dir, int tile) throws IOException
+    {
+        try (MappedMatrix a = MappedMatrix.create(dir.resolve("a.mat"), n, n, tile);
+             MappedMatrix b = MappedMatrix.create(dir.resolve("b.mat"), n, n, tile);
+             MappedMatrix c = MappedMatrix.create(dir.resolve("c.mat"), n, n, tile))
+        {
+            fillRandom(a, 1);
+            fillRandom(b, 2);
+            long t0 = System.nanoTime();
+            multiply(a, b, c, ForkJoinPool.commonPool());
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            System.out.printf("%dx%d from files, tile %d: %.3f s, %.2f GFLOP/s, %.1f MB per matrix%n", n, n, tile,
+                    seconds, 2.0 * n * n * n / seconds / 1e9, a.fileBytes() / 1e6);
 
+            // Spot check one entry against a dot product read straight from the files
+            int i = n / 3, j = n / 2;
+            double expected = 0;
+            for (int k = 0; k < n; k++)
+                expected += a.get(i, k) * b.get(k, j);
+            System.out.println("c[" + i + "][" + j + "] differs from direct dot product by " + Math.abs(expected - c.get(i, j)));
+        }
+    }
 
+    // A matrix that stores only its non-zero entries. In CSR form (byRows) the
+    // entries of row r are val[ptr[r] .. ptr[r+1]) with their columns in idx;
+    // CSC form is the same with rows and columns swapped. Memory is O(nnz).
+    static class SparseMatrix
+    {
+        final int rows, cols;
+        final boolean byRows;
+        final int ptr[], idx[];
+        final double val[];
+
+        SparseMatrix(int rows, int cols, boolean byRows, int ptr[], int idx[], double val[])
+        {
+            this.rows = rows;
+            this.cols = cols;
+            this.byRows = byRows;
+            this.ptr = ptr;
+            this.idx = idx;
+            this.val = val;
+        }
+
+        int nnz()
+        {
+            return ptr[ptr.length - 1];
+        }
+
+        // Builds a CSR (byRows) or CSC matrix from (row, col, value) triplets in any
+        // order. Duplicate positions are added together; zeros are dropped.
+        static SparseMatrix fromTriplets(int rows, int cols, int r[], int c[], double v[], int count, boolean byRows)
+        {
+            int major[] = byRows ? r : c, minor[] = byRows ? c : r;
+            int majors = byRows ? rows : cols;
+            if (count < 0 || count > r.length || count > c.length || count > v.length)
+                throw new IllegalArgumentException("count " + count + " does not fit the triplet arrays ("
+                        + r.length + ", " + c.length + ", " + v.length + ")");
+
+            // Counting sort by major index
+            int start[] = new int[majors + 1];
+            for (int e = 0; e < count; e++)
+            {
+                if (r[e] < 0 || r[e] >= rows || c[e] < 0 || c[e] >= cols)
+                    throw new IllegalArgumentException("Entry (" + r[e] + ", " + c[e] + ") is outside " + rows + "x" + cols);
+                start[major[e] + 1]++;
+            }
+            for (int i = 0; i < majors; i++)
+                start[i + 1] += start[i];
+            int next[] = Arrays.copyOf(start, majors);
+            int sortedMinor[] = new int[count];
+            double sortedVal[] = new double[count];
+            for (int e = 0; e < count; e++)
+            {
+                int at = next[major[e]]++;
+                sortedMinor[at] = minor[e];
+                sortedVal[at] = v[e];
+            }
+
+            // Merge duplicates inside each major line. seenLine[m] is the last line that
+            // had minor index m and slot[m] where it went; tagging by line (not by
+            // position) keeps marks from earlier lines stale once zeros are squeezed out.
+            int ptr[] = new int[majors + 1];
+            int idx[] = new int[count];
+            double val[] = new double[count];
+            int seenLine[] = new int[byRows ? cols : rows];
+            int slot[] = new int[seenLine.length];
+            Arrays.fill(seenLine, -1);
+            int nnz = 0;
+            for (int i = 0; i < majors; i++)
+            {
+                int lineStart = nnz;
+                for (int e = start[i]; e < start[i + 1]; e++)
+                {
+                    int m = sortedMinor[e];
+                    if (seenLine[m] == i)
+                        val[slot[m]] += sortedVal[e];
+                    else
+                    {
+                        seenLine[m] = i;
+                        slot[m] = nnz;
+                        idx[nnz] = m;
+                        val[nnz++] = sortedVal[e];
+                    }
+                }
+                int kept = lineStart;
+                for (int e = lineStart; e < nnz; e++)
+                {
+                    if (val[e] != 0)
+                    {
+                        idx[kept] = idx[e];
+                        val[kept++] = val[e];
+                    }
+                }
+                nnz = kept;
+                ptr[i + 1] = nnz;
+            }
+            return new SparseMatrix(rows, cols, byRows, ptr, Arrays.copyOf(idx, nnz), Arrays.copyOf(val, nnz));
+        }
+
+        // Same matrix stored the other way round (CSR <-> CSC)
+        SparseMatrix convert()
+        {
+            int majors = byRows ? rows : cols, minors = byRows ? cols : rows;
+            int nptr[] = new int[minors + 1];
+            for (int e = 0; e < nnz(); e++)
+                nptr[idx[e] + 1]++;
+            for (int i = 0; i < minors; i++)
+                nptr[i + 1] += nptr[i];
+            int next[] = Arrays.copyOf(nptr, minors);
+            int nidx[] = new int[nnz()];
+            double nval[] = new double[nnz()];
+            for (int i = 0; i < majors; i++)
+            {
+                for (int e = ptr[i]; e < ptr[i + 1]; e++)
+                {
+                    int at = next[idx[e]]++;
+                    nidx[at] = i;
+                    nval[at] = val[e];
+                }
+            }
+            return new SparseMatrix(rows, cols, !byRows, nptr, nidx, nval);
+        }
+
+        // Splits the rows into about `parts` runs holding equal numbers of non-zeros
+        int[] partitionRows(int parts)
+        {
+            int bounds[] = new int[parts + 1];
+            for (int k = 1; k < parts; k++)
+            {
+                long target = (long) nnz() * k / parts;
+                int lo = bounds[k - 1], hi = rows;
+                while (lo < hi)                         // first row whose start is past target
+                {
+                    int mid = (lo + hi) >>> 1;
+                    if (ptr[mid] < target)
+                        lo = mid + 1;
+                    else
+                        hi = mid;
+                }
+                bounds[k] = lo;
+            }
+            bounds[parts] = rows;
+            return bounds;
+        }
+
+        // Runs body(lo, hi) on the pool for every run of rows [bounds[k], bounds[k+1])
+        static void forEachPart(int bounds[], ForkJoinPool pool, BiConsumer<Integer, Integer> body)
+        {
+            ForkJoinTask<?> tasks[] = new ForkJoinTask<?>[bounds.length - 1];
+            for (int k = 0; k < tasks.length; k++)
+            {
+                int lo = bounds[k], hi = bounds[k + 1];
+                tasks[k] = pool.submit(() -> body.accept(lo, hi));
+            }
+            for (ForkJoinTask<?> task : tasks)
+                task.join();
+        }
+
+        // y = A * x (SpMV). CSR rows are split over the pool; CSC is done serially
+        // since its columns scatter into shared entries of y.
+        double[] multiply(double x[], ForkJoinPool pool)
+        {
+            if (x.length != cols)
+                throw new IllegalArgumentException("Vector length " + x.length + " does not match " + cols + " columns");
+            double y[] = new double[rows];
+            if (!byRows)
+            {
+                for (int j = 0; j < cols; j++)
+                    for (int e = ptr[j]; e < ptr[j + 1]; e++)
+                        y[idx[e]] += val[e] * x[j];
+                return y;
+            }
+            forEachPart(partitionRows(pool.getParallelism() * 4), pool, (lo, hi) ->
+            {
+                for (int i = lo; i < hi; i++)
+                {
+                    double sum = 0;
+                    for (int e = ptr[i]; e < ptr[i + 1]; e++)
+                        sum += val[e] * x[idx[e]];
+                    y[i] = sum;
+                }
+            });
+            return y;
+        }
+
+        // C = A * B (SpMM) with B dense, cols x p in row-major order. Each non-zero
+        // a(i, k) adds a(i, k) times row k of B to row i of C.
+        double[] multiply(double b[], int p, ForkJoinPool pool)
+        {
+            if (b.length != cols * p)
+                throw new IllegalArgumentException("Dense matrix must be " + cols + "x" + p);
+            SparseMatrix csr = byRows ? this : convert();
+            double c[] = new double[rows * p];
+            forEachPart(csr.partitionRows(pool.getParallelism() * 4), pool, (lo, hi) ->
+            {
+                for (int i = lo; i < hi; i++)
+                {
+                    for (int e = csr.ptr[i]; e < csr.ptr[i + 1]; e++)
+                    {
+                        double aik = csr.val[e];
+                        int bRow = csr.idx[e] * p, cRow = i * p;
+                        for (int j = 0; j < p; j++)
+                            c[cRow + j] += aik * b[bRow + j];
+                    }
+                }
+            });
+            return c;
+        }
+    }
+
+    // Times SpMV and SpMM on a random n x n matrix with the given fraction of non-zeros
+    static void sparseBenchmark(int n, double density, int p)
+    {
+        Random rnd = new Random(3);
+        int count = (int) Math.min(Integer.MAX_VALUE - 8, (long) (density * n * n));
+        int r[] = new int[count], c[] = new int[count];
+        double v[] = new double[count];
+        for (int e = 0; e < count; e++)
+        {
+            r[e] = rnd.nextInt(n);
+            c[e] = rnd.nextInt(n);
+            v[e] = rnd.nextDouble() - 0.5;
+        }
+        long t0 = System.nanoTime();
+        SparseMatrix a = SparseMatrix.fromTriplets(n, n, r, c, v, count, true);
+        long t1 = System.nanoTime();
+        System.out.printf("%dx%d with %d non-zeros built in %.1f ms (%.1f MB)%n", n, n, a.nnz(), (t1 - t0) / 1e6,
+                (a.nnz() * 12.0 + (n + 1) * 4.0) / 1e6);
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        double x[] = randomMatrix(n, 1, 4);
+        double b[] = randomMatrix(n, p, 5);
+        a.multiply(x, pool);                            // warm-up for the JIT
+        a.multiply(b, p, pool);
+
+        t0 = System.nanoTime();
+        double y[] = a.multiply(x, pool);
+        t1 = System.nanoTime();
+        double cm[] = a.multiply(b, p, pool);
+        long t2 = System.nanoTime();
+        System.out.printf("SpMV: %.3f ms, SpMM with %d columns: %.3f ms%n", (t1 - t0) / 1e6, p, (t2 - t1) / 1e6);
+
+        double yc[] = a.convert().multiply(x, pool);
+        System.out.println("CSR vs CSC SpMV max difference: " + maxDifference(y, yc));
+        if (n <= 2000)
+        {
+            double dense[] = new double[n * n];
+            for (int i = 0; i < n; i++)
+                for (int e = a.ptr[i]; e < a.ptr[i + 1]; e++)
+                    dense[i * n + a.idx[e]] = a.val[e];
+            System.out.println("SpMM vs dense multiply max difference: " + maxDifference(cm, multiply(dense, b, n, n, p)));
+        }
+    }
+
+    // Times add, sum and multiply on n x n matrices with the kernels in use
+    static void simdBenchmark(int n)
+    {
+        System.out.println(simd() ? "Kernels: Vector API, " + SIMD_LANES + " doubles per vector" : "Kernels: scalar loops");
+        double a[] = randomMatrix(n, n, 1);
+        double b[] = randomMatrix(n, n, 2);
+        double check = 0;
+        for (int round = 0; round < 2; round++)        // first round warms up the JIT
+        {
+            long t0 = System.nanoTime();
+            for (int r = 0; r < 10; r++)
+                check += add(a, b)[r];
+            long t1 = System.nanoTime();
+            for (int r = 0; r < 10; r++)
+                check += sum(a);
+            long t2 = System.nanoTime();
+            double c[] = multiply(a, b, n, n, n);
+            long t3 = System.nanoTime();
+            check += c[0];
+            if (round == 1)
+            {
+                System.out.printf("add:      %.3f ms%n", (t1 - t0) / 1e6 / 10);
+                System.out.printf("sum:      %.3f ms%n", (t2 - t1) / 1e6 / 10);
+                System.out.printf("multiply: %.3f s, %.2f GFLOP/s%n", (t3 - t2) / 1e9, 2.0 * n * n * n / (t3 - t2));
+            }
+        }
+        if (Double.isNaN(check))
+            System.out.println(check);
+    }
+
+    // Usage: java MATRIX_MULTIPLICATION            multiplies the 3x3 example
+    //        java MATRIX_MULTIPLICATION N [T]      times an N x N product on T threads
+    //        java MATRIX_MULTIPLICATION --strassen MAXN [CROSSOVER]
+    //                                              finds where Strassen beats the tiled kernel
+    //        java MATRIX_MULTIPLICATION --simd N   times add, sum and multiply with the active kernels
+    //        java MATRIX_MULTIPLICATION --mapped N DIR [TILE]
+    //                                              multiplies N x N matrices kept in files under DIR
+    //        java MATRIX_MULTIPLICATION --sparse N DENSITY [P]
+    //                                              times sparse (CSR) times vector and times N x P matrix
+    public static void main(String[]args) throws IOException
+    {
+        if (args.length == 0)
+        {
+            double a[] = {0,0,0, 4,5,6, 7,8,9};
+            double b[] = {0,0,0, 4,5,6, 7,8,9};
+            print(multiply(a, b, 3, 3, 3), 3, 3);
+            return;
+        }
+        if (args[0].equals("--strassen"))
+        {
+            int maxN = args.length > 1 ? Integer.parseInt(args[1]) : 2048;
+            int crossover = args.length > 2 ? Integer.parseInt(args[2]) : STRASSEN_CROSSOVER;
+            strassenBenchmark(maxN, crossover, ForkJoinPool.commonPool());
+            return;
+        }
+        if (args[0].equals("--mapped"))
+        {
+            int n = Integer.parseInt(args[1]);
+            Path dir = Paths.get(args.length > 2 ? args[2] : ".");
+            mappedBenchmark(n, dir, args.length > 3 ? Integer.parseInt(args[3]) : 1024);
+            return;
+        }
+        if (args[0].equals("--sparse"))
+        {
+            int n = Integer.parseInt(args[1]);
+            double density = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+            sparseBenchmark(n, density, args.length > 3 ? Integer.parseInt(args[3]) : 64);
+            return;
+        }
+        if (args[0].equals("--simd"))
+        {
+            simdBenchmark(args.length > 1 ? Integer.parseInt(args[1]) : 1024);
+            return;
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        double a[] = randomMatrix(n, n, 1);
+        double b[] = randomMatrix(n, n, 2);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        multiply(a, b, n, n, n, pool);                  // warm-up for the JIT
+        long t0 = System.nanoTime();
+        double c[] = multiply(a, b, n, n, n, pool);
+        double seconds = (System.nanoTime() - t0) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%dx%d on %d threads: %.3f s, %.2f GFLOP/s%n", n, n, threads, seconds,
+                2.0 * n * n * n / seconds / 1e9);
+        if (n <= 1024)
+            System.out.println("Max difference from naive loop: " + maxDifference(c, multiplyNaive(a, b, n, n, n)));
+    }
+}
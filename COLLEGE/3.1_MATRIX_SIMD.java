@@ -0,0 +1,101 @@
+// Vector API (SIMD) kernels for MATRIX_MULTIPLICATION.
+// The Vector API is still an incubator module, so it has to be added when
+// compiling this file and when running; this file does not depend on the
+// other one, which compiles without the flag:
+//   javac --add-modules jdk.incubator.vector "3.1_MATRIX_SIMD.java"
+//   javac "3.1_MATRIX_MULTIPLICATION.java"
+//   java --add-modules jdk.incubator.vector MATRIX_MULTIPLICATION --simd 1024
+// MATRIX_MULTIPLICATION looks this class up at run time and falls back to
+// plain loops when it (or the module) is missing.
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+class MATRIX_SIMD
+{
+    // Widest vector the CPU supports: 4 doubles with AVX2, 8 with AVX-512
+    static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    static int lanes()
+    {
+        return SPECIES.length();
+    }
+
+    // z = x + y, element by element
+    static void add(double x[], double y[], double z[])
+    {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(z.length); i < bound; i += SPECIES.length())
+        {
+            DoubleVector.fromArray(SPECIES, x, i).add(DoubleVector.fromArray(SPECIES, y, i)).intoArray(z, i);
+        }
+        for (; i < z.length; i++)
+            z[i] = x[i] + y[i];
+    }
+
+    // z = x - y, element by element
+    static void sub(double x[], double y[], double z[])
+    {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(z.length); i < bound; i += SPECIES.length())
+        {
+            DoubleVector.fromArray(SPECIES, x, i).sub(DoubleVector.fromArray(SPECIES, y, i)).intoArray(z, i);
+        }
+        for (; i < z.length; i++)
+            z[i] = x[i] - y[i];
+    }
+
+    // Sum of all elements: lanes are added up separately and reduced once at the end
+    static double sum(double x[])
+    {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(x.length); i < bound; i += SPECIES.length())
+            acc = acc.add(DoubleVector.fromArray(SPECIES, x, i));
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < x.length; i++)
+            sum += x[i];
+        return sum;
+    }
+
+    // Same tiling as MATRIX_MULTIPLICATION.multiplyRows, with the inner row
+    // update done as one fused multiply-add per vector of c. The tile sizes
+    // come in as arguments (MATRIX_MULTIPLICATION binds its BLOCK_I/K/J into
+    // the method handle), so this file compiles on its own.
+    static void multiplyRows(double a[], double b[], double c[], int m, int p, int rowLo, int rowHi,
+            int blockI, int blockK, int blockJ)
+    {
+        int step = SPECIES.length();
+        for (int ii = rowLo; ii < rowHi; ii += blockI)
+        {
+            int iEnd = Math.min(ii + blockI, rowHi);
+            for (int kk = 0; kk < m; kk += blockK)
+            {
+                int kEnd = Math.min(kk + blockK, m);
+                for (int jj = 0; jj < p; jj += blockJ)
+                {
+                    int jEnd = Math.min(jj + blockJ, p);
+                    int vEnd = jj + SPECIES.loopBound(jEnd - jj);
+                    for (int i = ii; i < iEnd; i++)
+                    {
+                        int cRow = i * p;
+                        for (int k = kk; k < kEnd; k++)
+                        {
+                            double aik = a[i * m + k];
+                            DoubleVector va = DoubleVector.broadcast(SPECIES, aik);
+                            int bRow = k * p;
+                            int j = jj;
+                            for (; j < vEnd; j += step)
+                            {
+                                DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bRow + j);
+                                DoubleVector vc = DoubleVector.fromArray(SPECIES, c, cRow + j);
+                                va.fma(vb, vc).intoArray(c, cRow + j);
+                            }
+                            for (; j < jEnd; j++)
+                                c[cRow + j] += aik * b[bRow + j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
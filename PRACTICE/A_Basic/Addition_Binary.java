@@ -1,39 +1,145 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class Addition_Binary{
-    public static void main(String [] args){
-        Scanner sc = new Scanner(System.in);
-        
-        int rem = 0, i = 0;
-        int [] sum = new int [20];
 
-        System.out.print("Input first binary number: ");
-        long b1 = sc.nextLong();
+    // Reads 8 text bytes as one long, first byte lowest
+    static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
 
-        System.out.print("Input second binary number: ");
-        long b2 = sc.nextLong();
-
-        while(b1 != 0 || b2 != 0){
-            sum[i] = (int)((b1 % 10 + b2 % 10 + rem) % 2);
-            rem = (int)((b1 % 10 + b2 % 10 + rem) / 2);
-            b1 = b1 / 10;
-            b2 = b2 / 10;
-            i++;
+    // The eight binary digits of every byte value
+    static final byte BYTE_BITS[] = new byte[256 * 8];
+
+    static {
+        for (int v = 0; v < 256; v++)
+            for (int b = 0; b < 8; b++)
+                BYTE_BITS[v * 8 + b] = (byte) ('0' + ((v >>> (7 - b)) & 1));
+    }
+
+    // Eight '0'/'1' bytes (first byte lowest in x) to the 8-bit value they
+    // spell, first byte being the highest bit. Each byte is 0 or 1 after the
+    // subtraction, and the multiply gathers them all into the top byte.
+    static int eightBits(long x){
+        x -= 0x3030303030303030L;
+        return (int) ((x * 0x8040201008040201L) >>> 56);
+    }
+
+    // Packs binary text into words, least significant word first
+    static long[] parse(byte text[]){
+        if (text.length == 0)
+            throw new NumberFormatException("Empty binary number");
+        long words[] = new long[(text.length + 63) / 64];
+        int end = text.length;
+        for (int w = 0; end > 0; w++){
+            int start = Math.max(0, end - 64);
+            long word = 0;
+            int i = start;
+            for (; (end - i) % 8 != 0; i++){    // odd digits at the front of the top word
+                int c = text[i] - '0';
+                if ((c & ~1) != 0)
+                    throw new NumberFormatException("Not a binary digit at index " + i);
+                word = (word << 1) | c;
+            }
+            for (; i < end; i += 8){
+                long x = (long) LONG_LE.get(text, i);
+                if ((x & 0xFEFEFEFEFEFEFEFEL) != 0x3030303030303030L)
+                    throw new NumberFormatException("Not a binary digit near index " + i);
+                word = (word << 8) | eightBits(x);
+            }
+            words[w] = word;
+            end = start;
+        }
+        return words;
+    }
+
+    static long[] parse(String text){
+        return parse(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    // a + b, 64 bits per step. A carry out of a word shows up as the unsigned
+    // sum being smaller than an operand.
+    static long[] add(long a[], long b[]){
+        if (a.length < b.length){
+            long t[] = a;
+            a = b;
+            b = t;
         }
+        long sum[] = new long[a.length + 1];
+        long carry = 0;
+        for (int i = 0; i < a.length; i++){
+            long x = a[i], y = i < b.length ? b[i] : 0;
+            long s = x + y;
+            long c = Long.compareUnsigned(s, x) < 0 ? 1 : 0;
+            long t = s + carry;
+            if (t == 0 && carry != 0)
+                c = 1;
+            sum[i] = t;
+            carry = c;
+        }
+        sum[a.length] = carry;
+        return sum;
+    }
 
-        if(rem != 0){
-            sum[i] = rem;
-            i++;
+    // Binary text of the words, without leading zeros, 8 digits per table copy
+    static String format(long words[]){
+        int top = words.length - 1;
+        while (top > 0 && words[top] == 0)
+            top--;
+        int bits = Math.max(1, 64 * top + 64 - Long.numberOfLeadingZeros(words[top]));
+        int bytes = (bits + 7) / 8;
+        byte out[] = new byte[bytes * 8];
+        for (int k = 0; k < bytes; k++){
+            int shift = (bytes - 1 - k) * 8;
+            int v = (int) (words[shift >>> 6] >>> (shift & 63)) & 0xff;
+            System.arraycopy(BYTE_BITS, v * 8, out, k * 8, 8);
         }
+        return new String(out, out.length - bits, bits, StandardCharsets.ISO_8859_1);
+    }
 
-        --i;
+    static String add(String b1, String b2){
+        return format(add(parse(b1), parse(b2)));
+    }
 
-        System.out.print("Sum of 2 binary numbers: ");
-        while(i >= 0){
-            System.out.print(sum[i]);
-            i--;
+    // Usage: java Addition_Binary               asks for two binary numbers
+    //        java Addition_Binary --bench BITS  adds two random BITS-digit numbers
+    public static void main(String [] args){
+        if (args.length > 1 && args[0].equals("--bench")){
+            int bits = Integer.parseInt(args[1]);
+            Random rnd = new Random(1);
+            byte t1[] = new byte[bits], t2[] = new byte[bits];
+            for (int i = 0; i < bits; i++){
+                t1[i] = (byte) ('0' + rnd.nextInt(2));
+                t2[i] = (byte) ('0' + rnd.nextInt(2));
+            }
+            t1[0] = t2[0] = '1';
+            for (int round = 0; round < 3; round++){
+                long t0 = System.nanoTime();
+                long a[] = parse(t1), b[] = parse(t2);
+                long tParse = System.nanoTime();
+                long s[] = add(a, b);
+                long tAdd = System.nanoTime();
+                String text = format(s);
+                long tFormat = System.nanoTime();
+                if (round == 2)
+                    System.out.printf("%d bits: parse %.3f ms, add %.3f ms, format %.3f ms (%d digits)%n", bits,
+                            (tParse - t0) / 1e6, (tAdd - tParse) / 1e6, (tFormat - tAdd) / 1e6, text.length());
+            }
+            return;
         }
 
+        Scanner sc = new Scanner(System.in);
+
+        System.out.print("Input first binary number: ");
+        String b1 = sc.next();
+
+        System.out.print("Input second binary number: ");
+        String b2 = sc.next();
+
+        System.out.print("Sum of 2 binary numbers: ");
+        System.out.println(add(b1, b2));
+
         sc.close();
     }
-}
\ No newline at end of file
+}
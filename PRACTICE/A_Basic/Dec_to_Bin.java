@@ -1,25 +1,221 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class Dec_to_Bin {
-    public static void main(String [] args){
-        int dec, quot, i=0, j;
-        int b[] = new int[100];
 
-        Scanner sc = new Scanner(System.in);
-        System.out.println("Enter decimal no: ");
-        dec = sc.nextInt();
-        quot = dec;
+    static final byte DIGITS[] = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.US_ASCII);
+
+    // The four binary digits of every nibble, so base 2 takes one copy per 4 bits
+    static final byte NIBBLES[] = new byte[16 * 4];
+
+    // The eight binary digits of every byte, for BigInteger magnitudes
+    static final byte BYTE_BITS[] = new byte[256 * 8];
+
+    // PAIRS[radix] holds the two digits of every value below radix^2, built on first use
+    static final byte PAIRS[][] = new byte[37][];
 
-        while(quot != 0){
-            b[i] = quot % 2;
-            quot = quot / 2;
-            i++;
+    static {
+        for (int v = 0; v < 16; v++)
+            for (int b = 0; b < 4; b++)
+                NIBBLES[v * 4 + b] = (byte) ('0' + ((v >>> (3 - b)) & 1));
+        for (int v = 0; v < 256; v++)
+            for (int b = 0; b < 8; b++)
+                BYTE_BITS[v * 8 + b] = (byte) ('0' + ((v >>> (7 - b)) & 1));
+    }
+
+    static byte[] pairs(int radix){
+        byte table[] = PAIRS[radix];
+        if (table == null){
+            table = new byte[radix * radix * 2];
+            for (int v = 0; v < radix * radix; v++){
+                table[v * 2] = DIGITS[v / radix];
+                table[v * 2 + 1] = DIGITS[v % radix];
+            }
+            PAIRS[radix] = table;
         }
+        return table;
+    }
 
-        System.out.println("Binary number: ");
-        for(j = i - 1; j >= 0; j--){
-            System.out.print(b[j]);
+    static void checkRadix(int radix){
+        if (radix < 2 || radix > 36)
+            throw new IllegalArgumentException("Base must be between 2 and 36: " + radix);
+    }
+
+    // Writes v in the given base into the end of buf (at least 65 bytes) and
+    // returns the index of the first digit. Negative numbers get a '-' sign;
+    // with unsigned set, v is read as an unsigned 64-bit value instead.
+    static int toBase(long v, int radix, boolean unsigned, byte buf[]){
+        checkRadix(radix);
+        int pos = buf.length;
+        boolean negative = !unsigned && v < 0;
+        long u = negative ? -v : v;             // Long.MIN_VALUE stays as 2^63 read unsigned
+
+        if (u == 0)
+            buf[--pos] = '0';
+        else if (radix == 2){
+            int bits = 64 - Long.numberOfLeadingZeros(u);
+            for (int done = 0; done < bits; done += 4, u >>>= 4){
+                pos -= 4;
+                System.arraycopy(NIBBLES, (int) (u & 15) * 4, buf, pos, 4);
+            }
+            pos = buf.length - bits;            // drop the leading zeros of the top nibble
+        }
+        else if ((radix & (radix - 1)) == 0){
+            int shift = Integer.numberOfTrailingZeros(radix);
+            for (; u != 0; u >>>= shift)
+                buf[--pos] = DIGITS[(int) (u & (radix - 1))];
         }
+        else{
+            if (u < 0){                         // top bit set: one unsigned step first
+                buf[--pos] = DIGITS[(int) Long.remainderUnsigned(u, radix)];
+                u = Long.divideUnsigned(u, radix);
+            }
+            byte table[] = pairs(radix);
+            int square = radix * radix;
+            while (u >= radix){
+                int pair = (int) (u % square);
+                u /= square;
+                buf[--pos] = table[pair * 2 + 1];
+                buf[--pos] = table[pair * 2];
+            }
+            if (u > 0)
+                buf[--pos] = DIGITS[(int) u];
+            if (buf[pos] == '0')                // the last pair may have brought a leading zero
+                pos++;
+        }
+        if (negative)
+            buf[--pos] = '-';
+        return pos;
+    }
+
+    static String toBase(long v, int radix){
+        byte buf[] = new byte[65];
+        int pos = toBase(v, radix, false, buf);
+        return new String(buf, pos, buf.length - pos, StandardCharsets.US_ASCII);
+    }
+
+    // Any BigInteger in any base. Power-of-two bases are read straight off the
+    // magnitude bytes; others use BigInteger's own divide-and-conquer toString.
+    static String toBase(BigInteger v, int radix){
+        checkRadix(radix);
+        if (v.bitLength() < 64)
+            return toBase(v.longValue(), radix);
+        if ((radix & (radix - 1)) != 0)
+            return v.toString(radix);
+
+        byte mag[] = v.abs().toByteArray();
+        int shift = Integer.numberOfTrailingZeros(radix);
+        int bits = v.abs().bitLength();
+        int digits = (bits + shift - 1) / shift;
+        byte out[] = new byte[digits + (v.signum() < 0 ? 1 : 0)];
+        int pos = out.length;
+        if (radix == 2){
+            for (int i = mag.length - 1; i >= 0 && pos > out.length - digits; i--){
+                int n = Math.min(8, pos - (out.length - digits));
+                System.arraycopy(BYTE_BITS, (mag[i] & 0xff) * 8 + 8 - n, out, pos - n, n);
+                pos -= n;
+            }
+        }
+        else{
+            for (int d = 0; d < digits; d++){
+                int bit = d * shift, value = 0;
+                for (int b = 0; b < shift && bit + b < bits; b++){
+                    int index = bit + b;
+                    int byteAt = mag.length - 1 - index / 8;
+                    value |= ((mag[byteAt] >>> (index % 8)) & 1) << b;
+                }
+                out[--pos] = DIGITS[value];
+            }
+        }
+        if (v.signum() < 0)
+            out[0] = '-';
+        return new String(out, StandardCharsets.US_ASCII);
+    }
+
+    // Reads whitespace separated decimal longs from in and writes each one in
+    // the given base on its own line. Parsing and formatting work on reused
+    // byte buffers only.
+    static long convertStream(InputStream in, OutputStream out, int radix) throws IOException {
+        byte inBuf[] = new byte[1 << 20], outBuf[] = new byte[1 << 20], digits[] = new byte[65];
+        int outLen = 0;
+        long value = 0, count = 0;
+        boolean inNumber = false, negative = false;
+        int len;
+        while ((len = in.read(inBuf)) >= 0 || inNumber){
+            if (len < 0){                       // end of file: a newline flushes the last number
+                inBuf[0] = '\n';
+                len = 1;
+            }
+            for (int i = 0; i < len; i++){
+                int b = inBuf[i];
+                if (b >= '0' && b <= '9'){
+                    // accumulate negatively so that Long.MIN_VALUE parses too
+                    if (value < (Long.MIN_VALUE + (b - '0')) / 10)
+                        throw new NumberFormatException("Number too large at record " + (count + 1));
+                    value = value * 10 - (b - '0');
+                    inNumber = true;
+                }
+                else if (b == '-' && !inNumber)
+                    negative = true;
+                else{
+                    if (inNumber){
+                        if (!negative && value == Long.MIN_VALUE)
+                            throw new NumberFormatException("Number too large at record " + (count + 1));
+                        if (outLen + 67 > outBuf.length){
+                            out.write(outBuf, 0, outLen);
+                            outLen = 0;
+                        }
+                        int pos = toBase(negative ? value : -value, radix, false, digits);
+                        System.arraycopy(digits, pos, outBuf, outLen, digits.length - pos);
+                        outLen += digits.length - pos;
+                        outBuf[outLen++] = '\n';
+                        count++;
+                    }
+                    value = 0;
+                    inNumber = false;
+                    negative = false;
+                }
+            }
+        }
+        out.write(outBuf, 0, outLen);
+        return count;
+    }
+
+    // Usage: java Dec_to_Bin                       asks for a decimal number
+    //        java Dec_to_Bin --base B NUMBER       prints NUMBER (any size) in base B
+    //        java Dec_to_Bin IN OUT [BASE]         converts every number in file IN
+    public static void main(String [] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("--base")){
+            System.out.println(toBase(new BigInteger(args[2]), Integer.parseInt(args[1])));
+            return;
+        }
+        if (args.length >= 2){
+            int radix = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+            checkRadix(radix);
+            long t0 = System.nanoTime();
+            long count;
+            try (InputStream in = new FileInputStream(args[0]); OutputStream out = new FileOutputStream(args[1])){
+                count = convertStream(in, out, radix);
+            }
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            double mb = new File(args[0]).length() / 1e6;
+            System.out.printf("Converted %d numbers in %.3f s (%.1f MB/s of input)%n", count, seconds, mb / seconds);
+            return;
+        }
+
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Enter decimal no: ");
+        long dec = sc.nextLong();
+
+        System.out.println("Binary number: ");
+        System.out.println(toBase(dec, 2));
 
         sc.close();
     }
@@ -1,20 +1,338 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class Factorial_Recursive {
 
-    static int findFactorial(int num){
-        if (num == 0)
-            return 1;
-        else{
-            return num * findFactorial(num-1);
+    // Below this many factors a product is multiplied out directly
+    static final int LEAF_SIZE = 64;
+
+    // Above this size a multiplication is split Toom-Cook style into five
+    // smaller ones that run in parallel; below it BigInteger's own multiply is
+    // used. It is the same three-way split BigInteger does, just forked.
+    static final int PARALLEL_MULTIPLY_BITS = 1 << 20;
+
+    static final BigInteger THREE = BigInteger.valueOf(3);
+
+    static class MultiplyTask extends RecursiveTask<BigInteger> {
+        final BigInteger a, b;
+
+        MultiplyTask(BigInteger a, BigInteger b){
+            this.a = a;
+            this.b = b;
+        }
+
+        // Bits [from, from + k) of the non-negative number x
+        static BigInteger slice(BigInteger x, int from, int k){
+            BigInteger high = x.shiftRight(from);
+            return high.subtract(high.shiftRight(k).shiftLeft(k));
+        }
+
+        // x as a polynomial x2*X^2 + x1*X + x0 in X = 2^k, evaluated at 0, 1, -1, 2 and infinity
+        static BigInteger[] evaluate(BigInteger x, int k){
+            BigInteger x0 = slice(x, 0, k), x1 = slice(x, k, k), x2 = x.shiftRight(2 * k);
+            BigInteger d = x2.add(x0), at1 = d.add(x1);
+            return new BigInteger[] {x0, at1, d.subtract(x1), at1.add(x2).shiftLeft(1).subtract(x0), x2};
+        }
+
+        protected BigInteger compute(){
+            // Splitting only costs extra work when there is no other core to take the pieces
+            if (Math.min(a.bitLength(), b.bitLength()) < PARALLEL_MULTIPLY_BITS || a.signum() < 0 || b.signum() < 0
+                    || ForkJoinPool.getCommonPoolParallelism() < 2)
+                return a.multiply(b);
+
+            // a = a2*X^2 + a1*X + a0 with X = 2^k, same for b; evaluate at 0, 1, -1, 2, infinity.
+            // A square keeps both operands the same object all the way down, so that
+            // BigInteger can still use its faster squaring at the bottom.
+            int k = (Math.max(a.bitLength(), b.bitLength()) + 2) / 3;
+            BigInteger ea[] = evaluate(a, k);
+            BigInteger eb[] = a == b ? ea : evaluate(b, k);
+            MultiplyTask p0 = new MultiplyTask(ea[0], eb[0]);
+            MultiplyTask p1 = new MultiplyTask(ea[1], eb[1]);
+            MultiplyTask pm1 = new MultiplyTask(ea[2], eb[2]);
+            MultiplyTask p2 = new MultiplyTask(ea[3], eb[3]);
+            MultiplyTask pInf = new MultiplyTask(ea[4], eb[4]);
+            invokeAll(p0, p1, pm1, p2, pInf);
+            BigInteger v0 = p0.join(), v1 = p1.join(), vm1 = pm1.join(), v2 = p2.join(), vInf = pInf.join();
+
+            // Interpolation (Bodrato's sequence, as in BigInteger.multiplyToomCook3)
+            BigInteger t2 = v2.subtract(vm1).divide(THREE);
+            BigInteger tm1 = v1.subtract(vm1).shiftRight(1);
+            BigInteger t1 = v1.subtract(v0);
+            t2 = t2.subtract(t1).shiftRight(1);
+            t1 = t1.subtract(tm1).subtract(vInf);
+            t2 = t2.subtract(vInf.shiftLeft(1));
+            tm1 = tm1.subtract(t2);
+            return vInf.shiftLeft(k).add(t2).shiftLeft(k).add(t1).shiftLeft(k).add(tm1).shiftLeft(k).add(v0);
         }
     }
 
-    public static void main(String [] args){
+    // Product of factors[lo..hi), or of the numbers lo..hi-1 themselves when
+    // factors is null. Halves are multiplied as a balanced tree, so the big
+    // multiplications are between numbers of similar size, and the halves
+    // run in parallel on the fork-join pool.
+    static class ProductTask extends RecursiveTask<BigInteger> {
+        final long factors[];
+        final long lo, hi;
+
+        ProductTask(long factors[], long lo, long hi){
+            this.factors = factors;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected BigInteger compute(){
+            if (hi - lo <= LEAF_SIZE){
+                // Pack as many factors as fit into one long before going to BigInteger
+                BigInteger res = BigInteger.ONE;
+                long acc = 1;
+                for (long i = lo; i < hi; i++){
+                    long f = factors == null ? i : factors[(int) i];
+                    if (Math.multiplyHigh(acc, f) != 0 || acc * f < 0){
+                        res = res.multiply(BigInteger.valueOf(acc));
+                        acc = f;
+                    }
+                    else
+                        acc *= f;
+                }
+                return res.multiply(BigInteger.valueOf(acc));
+            }
+            long mid = (lo + hi) >>> 1;
+            ProductTask left = new ProductTask(factors, lo, mid);
+            left.fork();
+            BigInteger right = new ProductTask(factors, mid, hi).compute();
+            return new MultiplyTask(left.join(), right).invoke();
+        }
+    }
+
+    // n! as the product tree of 2..n
+    static BigInteger findFactorial(int num){
+        if (num < 0)
+            throw new IllegalArgumentException("Factorial of a negative number: " + num);
+        if (num < 2)
+            return BigInteger.ONE;
+        return ForkJoinPool.commonPool().invoke(new ProductTask(null, 2, num + 1L));
+    }
+
+    // n! by the prime-swing method: n! = ((n/2)!)^2 * swing(n), where swing(n)
+    // is a product of few prime powers. This does far fewer big multiplications
+    // than the plain product.
+    static BigInteger primeSwingFactorial(int num){
+        if (num < 0)
+            throw new IllegalArgumentException("Factorial of a negative number: " + num);
+        int primes[] = primesUpTo(num);
+        long factors[] = new long[primes.length];
+        return primeSwing(num, primes, factors);
+    }
+
+    static BigInteger primeSwing(int n, int primes[], long factors[]){
+        if (n < 2)
+            return BigInteger.ONE;
+        BigInteger half = primeSwing(n / 2, primes, factors);
+        BigInteger square = new MultiplyTask(half, half).invoke();
+        return new MultiplyTask(square, swing(n, primes, factors)).invoke();
+    }
+
+    // swing(n) = n! / ((n/2)!)^2. Prime p appears in it once for every k with
+    // floor(n / p^k) odd.
+    static BigInteger swing(int n, int primes[], long factors[]){
+        int count = 0;
+        for (int p : primes){
+            if (p > n)
+                break;
+            long pow = 1;
+            for (long q = n / p; q > 0; q /= p){
+                if ((q & 1) == 1)
+                    pow *= p;
+            }
+            if (pow > 1)
+                factors[count++] = pow;
+        }
+        return ForkJoinPool.commonPool().invoke(new ProductTask(factors, 0, count));
+    }
+
+    static int[] primesUpTo(int n){
+        boolean composite[] = new boolean[n + 1];
+        int count = 0;
+        for (int i = 2; i <= n; i++){
+            if (!composite[i]){
+                count++;
+                for (long j = (long) i * i; j <= n; j += i)
+                    composite[(int) j] = true;
+            }
+        }
+        int primes[] = new int[count];
+        count = 0;
+        for (int i = 2; i <= n; i++){
+            if (!composite[i])
+                primes[count++] = i;
+        }
+        return primes;
+    }
+
+    static final long MOD = 1_000_000_007L;
+
+    // n! mod p and 1/n! mod p for every n up to a limit, so that nCr mod p is
+    // three lookups and two multiplications. p must be a prime below 2^31 so
+    // that products of two residues fit in a long. The tables are plain long[]
+    // when built, or views straight into a mapped file when loaded with load().
+    static class FactorialTable {
+        static final long MAGIC = 0x46414354_4d4f4431L;         // "FACTMOD1"
+
+        final long p;
+        final int limit;
+        final LongBuffer fact, invFact;
+
+        private FactorialTable(long p, int limit, LongBuffer fact, LongBuffer invFact){
+            this.p = p;
+            this.limit = limit;
+            this.fact = fact;
+            this.invFact = invFact;
+        }
+
+        static FactorialTable build(int limit, long p){
+            if (p < 2 || p >= (1L << 31))
+                throw new IllegalArgumentException("Modulus must be a prime below 2^31: " + p);
+            if (limit < 0 || limit >= p)
+                throw new IllegalArgumentException("Limit must be in [0, p): " + limit);
+            long fact[] = new long[limit + 1], invFact[] = new long[limit + 1];
+            fact[0] = 1;
+            for (int i = 1; i <= limit; i++)
+                fact[i] = fact[i - 1] * i % p;
+            invFact[limit] = power(fact[limit], p - 2, p);            // Fermat's little theorem
+            for (int i = limit; i > 0; i--)
+                invFact[i - 1] = invFact[i] * i % p;
+            return new FactorialTable(p, limit, LongBuffer.wrap(fact), LongBuffer.wrap(invFact));
+        }
+
+        static long power(long base, long exp, long p){
+            long res = 1;
+            base %= p;
+            for (; exp > 0; exp >>= 1){
+                if ((exp & 1) == 1)
+                    res = res * base % p;
+                base = base * base % p;
+            }
+            return res;
+        }
+
+        long factorial(int n){
+            return fact.get(n);
+        }
+
+        // n choose r mod p, 0 when r is out of range
+        long nCr(int n, int r){
+            if (r < 0 || r > n)
+                return 0;
+            return fact.get(n) * invFact.get(r) % p * invFact.get(n - r) % p;
+        }
+
+        // Number of ordered choices of r out of n, mod p
+        long nPr(int n, int r){
+            if (r < 0 || r > n)
+                return 0;
+            return fact.get(n) * invFact.get(n - r) % p;
+        }
+
+        long tableBytes(){
+            return (limit + 1L) * Long.BYTES;
+        }
+
+        // File layout: magic, p, limit, then fact[0..limit], then invFact[0..limit]
+        void save(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+                MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, 3 * Long.BYTES);
+                header.order(ByteOrder.nativeOrder()).putLong(MAGIC).putLong(p).putLong(limit);
+                ch.map(FileChannel.MapMode.READ_WRITE, 3 * Long.BYTES, tableBytes())
+                        .order(ByteOrder.nativeOrder()).asLongBuffer().put(fact.duplicate().rewind());
+                ch.map(FileChannel.MapMode.READ_WRITE, 3 * Long.BYTES + tableBytes(), tableBytes())
+                        .order(ByteOrder.nativeOrder()).asLongBuffer().put(invFact.duplicate().rewind());
+            }
+        }
+
+        // Maps a saved table; nothing is copied or recomputed, pages load on first use
+        static FactorialTable load(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)){
+                MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, 3 * Long.BYTES);
+                header.order(ByteOrder.nativeOrder());
+                if (header.getLong(0) != MAGIC)
+                    throw new IOException(file + " is not a factorial table");
+                long p = header.getLong(8);
+                int limit = (int) header.getLong(16);
+                long bytes = (limit + 1L) * Long.BYTES;
+                if (ch.size() != 3 * Long.BYTES + 2 * bytes)
+                    throw new IOException(file + " is truncated");
+                LongBuffer fact = ch.map(FileChannel.MapMode.READ_ONLY, 3 * Long.BYTES, bytes)
+                        .order(ByteOrder.nativeOrder()).asLongBuffer();
+                LongBuffer invFact = ch.map(FileChannel.MapMode.READ_ONLY, 3 * Long.BYTES + bytes, bytes)
+                        .order(ByteOrder.nativeOrder()).asLongBuffer();
+                return new FactorialTable(p, limit, fact, invFact);
+            }
+        }
+    }
+
+    // Usage: java Factorial_Recursive                 asks for n and prints n!
+    //        java Factorial_Recursive N [--swing]     times N! (product tree, or prime swing)
+    //        java Factorial_Recursive --mod LIMIT [FILE]
+    //                                                 builds n! mod 1e9+7 tables up to LIMIT (or maps
+    //                                                 them from FILE, saving them there the first time)
+    //                                                 and times random nCr queries
+    public static void main(String [] args) throws IOException {
+        if (args.length > 1 && args[0].equals("--mod")){
+            int limit = Integer.parseInt(args[1]);
+            Path file = args.length > 2 ? Paths.get(args[2]) : null;
+            long t0 = System.nanoTime();
+            FactorialTable table;
+            if (file != null && Files.exists(file))
+                table = FactorialTable.load(file);
+            else{
+                table = FactorialTable.build(limit, MOD);
+                if (file != null)
+                    table.save(file);
+            }
+            long t1 = System.nanoTime();
+            System.out.printf("Tables up to %d ready in %.3f ms%n", table.limit, (t1 - t0) / 1e6);
+
+            Random rnd = new Random(7);
+            int queries = 10_000_000;
+            long check = 0;
+            t0 = System.nanoTime();
+            for (int q = 0; q < queries; q++){
+                int n = rnd.nextInt(table.limit + 1);
+                check += table.nCr(n, rnd.nextInt(n + 1));
+            }
+            t1 = System.nanoTime();
+            System.out.printf("%d random nCr queries: %.1f ns each (checksum %d)%n", queries, (double) (t1 - t0) / queries, check);
+            System.out.println("C(" + table.limit + ", " + table.limit / 2 + ") mod " + table.p + " = "
+                    + table.nCr(table.limit, table.limit / 2));
+            return;
+        }
+        if (args.length > 0){
+            int n = Integer.parseInt(args[0]);
+            boolean useSwing = args.length > 1 && args[1].equals("--swing");
+            long t0 = System.nanoTime();
+            BigInteger res = useSwing ? primeSwingFactorial(n) : findFactorial(n);
+            long nanos = System.nanoTime() - t0;
+            System.out.printf("%d! has %d bits, computed in %.1f ms (%s)%n", n, res.bitLength(), nanos / 1e6,
+                    useSwing ? "prime swing" : "product tree");
+            return;
+        }
+
         Scanner sc = new Scanner(System.in);
         System.out.println("Enter a num: ");
         int n = sc.nextInt();
-        int res = findFactorial(n);
+        BigInteger res = findFactorial(n);
         System.out.println("Factorial of " + n + " = " + res);
         sc.close();
     }
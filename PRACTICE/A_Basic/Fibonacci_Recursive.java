@@ -1,27 +1,263 @@
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 public class Fibonacci_Recursive {
-    
-    static int fibonacciGenerator(int n){
+
+    // F(92) is the largest Fibonacci number that fits in a long
+    static final int MAX_LONG_INDEX = 92;
+
+    // Fast doubling: from F(k) and F(k+1),
+    //   F(2k)   = F(k) * (2*F(k+1) - F(k))
+    //   F(2k+1) = F(k)^2 + F(k+1)^2
+    // so F(n) takes one step per bit of n.
+    static long fibonacciGenerator(int n){
+        if (n < 0 || n > MAX_LONG_INDEX)
+            throw new ArithmeticException("F(" + n + ") does not fit in a long");
+        // Plain long arithmetic wraps mod 2^64, which keeps F(n) exact as long as it fits
+        long a = 0, b = 1;
+        for (int bit = Integer.highestOneBit(n); bit != 0; bit >>>= 1){
+            long c = a * (2 * b - a);
+            long d = a * a + b * b;
+            if ((n & bit) == 0){
+                a = c;
+                b = d;
+            }
+            else{
+                a = d;
+                b = c + d;
+            }
+        }
+        return a;
+    }
+
+    // Exact F(n) for any n >= 0. Works on the pair (F(k-1), F(k)) with
+    //   F(2k-1) = F(k)^2 + F(k-1)^2
+    //   F(2k+1) = 4*F(k)^2 - F(k-1)^2 + 2*(-1)^k
+    // which needs only two squarings per bit; for big numbers the two
+    // squarings run in parallel.
+    static BigInteger fibonacciBig(long n){
+        if (n < 0)
+            throw new IllegalArgumentException("n must be >= 0: " + n);
         if (n == 0)
-            return 0;
-        else if (n == 1)
-            return 1;
-        else{
-            return fibonacciGenerator(n - 1) + fibonacciGenerator(n - 2);
+            return BigInteger.ZERO;
+        BigInteger prev = BigInteger.ZERO, cur = BigInteger.ONE;     // k = 1
+        boolean kOdd = true;
+        for (long bit = Long.highestOneBit(n) >>> 1; bit != 0; bit >>>= 1){
+            BigInteger s1, s0;
+            if (cur.bitLength() > 100000){
+                BigInteger p = prev;
+                ForkJoinTask<BigInteger> task = ForkJoinPool.commonPool().submit(() -> p.multiply(p));
+                s1 = cur.multiply(cur);
+                s0 = task.join();
+            }
+            else{
+                s1 = cur.multiply(cur);
+                s0 = prev.multiply(prev);
+            }
+            BigInteger odd1 = s1.add(s0);                                          // F(2k-1)
+            BigInteger odd2 = s1.shiftLeft(2).subtract(s0).add(BigInteger.valueOf(kOdd ? -2 : 2)); // F(2k+1)
+            BigInteger even = odd2.subtract(odd1);                                 // F(2k)
+            if ((n & bit) == 0){
+                prev = odd1;
+                cur = even;
+                kOdd = false;
+            }
+            else{
+                prev = even;
+                cur = odd2;
+                kOdd = true;
+            }
+        }
+        return cur;
+    }
+
+    // a * b mod m for 0 <= a, b < m, without overflowing for any positive long m
+    static long mulMod(long a, long b, long m){
+        if ((a | b) >>> 31 == 0)
+            return a * b % m;
+        long r = 0;
+        while (b > 0){
+            if ((b & 1) != 0)
+                r = r >= m - a ? r - (m - a) : r + a;
+            a = a >= m - a ? a - (m - a) : a + a;
+            b >>= 1;
+        }
+        return r;
+    }
+
+    // F(n) mod m for any n >= 0 and m >= 1
+    static long fibonacciMod(long n, long m){
+        if (n < 0 || m < 1)
+            throw new IllegalArgumentException("Need n >= 0 and m >= 1");
+        long a = 0, b = 1 % m;
+        for (long bit = Long.highestOneBit(n); bit != 0; bit >>>= 1){
+            long twoB = b >= m - b ? b - (m - b) : b + b;
+            long c = mulMod(a, twoB >= a ? twoB - a : twoB + (m - a), m);
+            long aa = mulMod(a, a, m), bb = mulMod(b, b, m);
+            long d = aa >= m - bb ? aa - (m - bb) : aa + bb;
+            if ((n & bit) == 0){
+                a = c;
+                b = d;
+            }
+            else{
+                a = d;
+                b = c >= m - d ? c - (m - d) : c + d;
+            }
+        }
+        return a;
+    }
+
+    // F(0), F(1), F(2), ... with one addition per term. Terms come out as Long
+    // while they fit and carry on as BigInteger from F(93) onwards.
+    static class FibonacciSequence implements Iterator<Number> {
+        private long a = 0, b = 1;
+        private BigInteger bigA, bigB;      // set once the terms no longer fit in a long
+
+        public boolean hasNext(){
+            return true;
         }
+
+        public Number next(){
+            if (bigA != null){
+                BigInteger res = bigA;
+                bigA = bigB;
+                bigB = res.add(bigB);
+                return res;
+            }
+            long res = a;
+            if (b > Long.MAX_VALUE - a){
+                bigA = BigInteger.valueOf(b);
+                bigB = BigInteger.valueOf(a).add(bigA);
+            }
+            else{
+                long c = a + b;
+                a = b;
+                b = c;
+            }
+            return res;
+        }
+    }
+
+    // F(0) .. F(92), every Fibonacci number that fits in a long, without boxing
+    static LongStream longs(){
+        PrimitiveIterator.OfLong it = new PrimitiveIterator.OfLong(){
+            long a = 0, b = 1;
+            int left = MAX_LONG_INDEX + 1;
+
+            public boolean hasNext(){
+                return left > 0;
+            }
+
+            public long nextLong(){
+                if (left-- <= 0)
+                    throw new NoSuchElementException();
+                long res = a;
+                a = b;
+                b = res + b;                // only wraps after the last term is handed out
+                return res;
+            }
+        };
+        return StreamSupport.longStream(Spliterators.spliterator(it, MAX_LONG_INDEX + 1,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
     }
-    
-    public static void main(String [] args){
+
+    // Writes F(0) .. F(count - 1), one per line, through a direct buffer and a
+    // FileChannel. Long terms are formatted straight into the buffer.
+    static void writeTerms(Path file, long count) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+        byte digits[] = new byte[20];
+        FibonacciSequence seq = new FibonacciSequence();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            for (long i = 0; i < count; i++){
+                Number term = seq.next();
+                if (term instanceof Long){
+                    long v = term.longValue();
+                    int len = 0;
+                    do{
+                        digits[len++] = (byte) ('0' + v % 10);
+                        v /= 10;
+                    } while (v != 0);
+                    if (buf.remaining() < len + 1)
+                        drain(buf, out);
+                    while (len > 0)
+                        buf.put(digits[--len]);
+                }
+                else{
+                    byte text[] = term.toString().getBytes(StandardCharsets.US_ASCII);
+                    for (int off = 0; off < text.length; ){
+                        if (!buf.hasRemaining())
+                            drain(buf, out);
+                        int n = Math.min(buf.remaining(), text.length - off);
+                        buf.put(text, off, n);
+                        off += n;
+                    }
+                    if (!buf.hasRemaining())
+                        drain(buf, out);
+                }
+                buf.put((byte) '\n');
+            }
+            drain(buf, out);
+        }
+    }
+
+    static void drain(ByteBuffer buf, FileChannel out) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining())
+            out.write(buf);
+        buf.clear();
+    }
+
+    // Usage: java Fibonacci_Recursive               prints F(0) .. F(n)
+    //        java Fibonacci_Recursive N [MOD]       prints F(N) exactly, or F(N) mod MOD
+    //        java Fibonacci_Recursive --file PATH N writes F(0) .. F(N-1) to PATH
+    public static void main(String [] args) throws IOException {
+        if (args.length > 2 && args[0].equals("--file")){
+            long count = Long.parseLong(args[2]);
+            long t0 = System.nanoTime();
+            writeTerms(Paths.get(args[1]), count);
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            System.out.printf("Wrote %d terms in %.3f s (%.1f MB)%n", count, seconds, Files.size(Paths.get(args[1])) / 1e6);
+            return;
+        }
+        if (args.length > 0){
+            long n = Long.parseLong(args[0]);
+            long t0 = System.nanoTime();
+            String res;
+            if (args.length > 1)
+                res = Long.toString(fibonacciMod(n, Long.parseLong(args[1])));
+            else{
+                BigInteger f = fibonacciBig(n);
+                res = f.bitLength() > 4096 ? f.bitLength() + "-bit number" : f.toString();
+            }
+            long nanos = System.nanoTime() - t0;
+            System.out.println("F(" + n + ")" + (args.length > 1 ? " mod " + args[1] : "") + " = " + res);
+            System.out.printf("Computed in %.3f ms%n", nanos / 1e6);
+            return;
+        }
+
         Scanner sc = new Scanner(System.in);
         System.out.println("Enter n: ");
         int n = sc.nextInt();
-        int res;
+        StringBuilder sb = new StringBuilder();
+        FibonacciSequence seq = new FibonacciSequence();
 
         for(int i = 0; i <= n; i++){
-            res = fibonacciGenerator(i);
-            System.out.print(res + " ");
+            sb.append(seq.next()).append(' ');
         }
+        System.out.print(sb);
         sc.close();
     }
 }
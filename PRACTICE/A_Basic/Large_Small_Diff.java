@@ -1,14 +1,169 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class Large_Small_Diff {
+
+    // Vector API kernel from Large_Small_Diff_SIMD. It is only found when that
+    // class was compiled and the jdk.incubator.vector module is present at
+    // run time; otherwise it stays null and the scalar loop is used.
+    static final MethodHandle SIMD_STATS;
+    static final int SIMD_LANES;
+
+    static {
+        MethodHandle stats = null;
+        int lanes = 1;
+        try {
+            Class<?> simd = Class.forName("Large_Small_Diff_SIMD");
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            stats = lookup.findStatic(simd, "stats", MethodType.methodType(void.class, int[].class, int.class,
+                    int.class, long[].class));
+            lanes = (int) lookup.findStatic(simd, "lanes", MethodType.methodType(int.class)).invokeExact();
+        } catch (Throwable e){
+            stats = null;
+            lanes = 1;
+        }
+        SIMD_STATS = stats;
+        SIMD_LANES = lanes;
+    }
+
+    // True when the Vector API kernel is in use. It can be turned off with
+    // -Dreduce.simd=false to compare against the scalar loop.
+    static boolean simd(){
+        return SIMD_STATS != null && !"false".equals(System.getProperty("reduce.simd"));
+    }
+
+    // Everything one pass over an array gives. argMin and argMax are the first
+    // index holding min and max.
+    static class Stats {
+        int min, max, argMin, argMax;
+        long sum, count;
+
+        long range(){
+            return (long) max - min;
+        }
+
+        // Combines with the stats of a range that comes after this one
+        Stats merge(Stats next){
+            if (next.count == 0)
+                return this;
+            if (count == 0)
+                return next;
+            if (next.min < min){
+                min = next.min;
+                argMin = next.argMin;
+            }
+            if (next.max > max){
+                max = next.max;
+                argMax = next.argMax;
+            }
+            sum += next.sum;
+            count += next.count;
+            return this;
+        }
+    }
+
+    // Stats of a[from..to), without changing a
+    static Stats stats(int a[], int from, int to){
+        Stats s = new Stats();
+        s.count = to - from;
+        if (from >= to)
+            return s;
+        if (simd()){
+            long out[] = new long[5];
+            try {
+                SIMD_STATS.invokeExact(a, from, to, out);
+            } catch (Throwable e){
+                throw new IllegalStateException(e);
+            }
+            s.min = (int) out[0];
+            s.max = (int) out[1];
+            s.sum = out[2];
+            s.argMin = (int) out[3];
+            s.argMax = (int) out[4];
+            return s;
+        }
+        int min = a[from], max = a[from], argMin = from, argMax = from;
+        long sum = 0;
+        for (int i = from; i < to; i++){
+            int v = a[i];
+            if (v < min){
+                min = v;
+                argMin = i;
+            }
+            if (v > max){
+                max = v;
+                argMax = i;
+            }
+            sum += v;
+        }
+        s.min = min;
+        s.max = max;
+        s.sum = sum;
+        s.argMin = argMin;
+        s.argMax = argMax;
+        return s;
+    }
+
+    // Arrays are cut into chunks of this many ints for the parallel pass
+    static final int CHUNK = 1 << 20;
+
+    // Stats of the whole array. Big arrays are split into chunks reduced on
+    // the common pool by a parallel stream; merging in encounter order keeps
+    // argMin and argMax at the first occurrence.
+    static Stats stats(int a[]){
+        if (a.length < 4 * CHUNK)
+            return stats(a, 0, a.length);
+        int chunks = (a.length + CHUNK - 1) / CHUNK;
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> stats(a, c * CHUNK, (int) Math.min((long) (c + 1) * CHUNK, a.length)))
+                .reduce(Stats::merge).get();
+    }
+
+    // Usage: java Large_Small_Diff              the difference for the built-in array
+    //        java Large_Small_Diff --bench N    times one pass over N random ints
     public static void main(String [] args){
+        if (args.length > 1 && args[0].equals("--bench")){
+            int n = Integer.parseInt(args[1]);
+            int a[] = new int[n];
+            Random rnd = new Random(1);
+            for (int i = 0; i < n; i++)
+                a[i] = rnd.nextInt();
+            System.out.println(simd() ? "Kernel: Vector API, " + SIMD_LANES + " ints per vector" : "Kernel: scalar loop");
+            for (int round = 0; round < 3; round++){
+                long t0 = System.nanoTime();
+                Stats one = stats(a, 0, n);
+                long t1 = System.nanoTime();
+                Stats all = stats(a);
+                long t2 = System.nanoTime();
+                if (round == 2){
+                    System.out.printf("min %d at %d, max %d at %d, range %d, sum %d%n", all.min, all.argMin,
+                            all.max, all.argMax, all.range(), all.sum);
+                    System.out.printf("one thread: %.1f ms (%.0f M ints/s), parallel: %.1f ms (%.0f M ints/s)%n",
+                            (t1 - t0) / 1e6, n / ((t1 - t0) / 1e3), (t2 - t1) / 1e6, n / ((t2 - t1) / 1e3));
+                    if (one.min != all.min || one.argMin != all.argMin || one.max != all.max
+                            || one.argMax != all.argMax || one.sum != all.sum)
+                        throw new IllegalStateException("Parallel and single-thread results differ");
+                }
+            }
+            if (n <= 100_000_000){
+                int copy[] = a.clone();
+                long t0 = System.nanoTime();
+                Arrays.sort(copy);
+                long nanos = System.nanoTime() - t0;
+                System.out.printf("old Arrays.sort on a copy: %.1f ms, range %d%n", nanos / 1e6,
+                        (long) copy[n - 1] - copy[0]);
+            }
+            return;
+        }
+
         int arr [] = {12, 34, 56, 2, 7, 01, 9, 90, 83};
-        Arrays.sort(arr);
-        
+        Stats s = stats(arr);
+
         if(arr.length > 1){
-            System.out.println("Diff b/w largest and smallest: " + (arr[arr.length-1] - arr[0]));
+            System.out.println("Diff b/w largest and smallest: " + s.range());
         }
-
-        
-    }    
+    }
 }
@@ -0,0 +1,83 @@
+// Vector API (SIMD) kernel for Large_Small_Diff.
+// The Vector API is still an incubator module, so it has to be added when
+// compiling this file and when running:
+//   javac --add-modules jdk.incubator.vector Large_Small_Diff_SIMD.java Large_Small_Diff.java
+//   java --add-modules jdk.incubator.vector Large_Small_Diff --bench 100000000
+// Large_Small_Diff looks this class up at run time and falls back to a
+// plain loop when it (or the module) is missing.
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+class Large_Small_Diff_SIMD {
+
+    // Widest vector the CPU supports: 8 ints with AVX2, 16 with AVX-512
+    static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    // Longs in a vector of the same size, for the sum: each int vector is
+    // widened into two of these so the sum cannot overflow
+    static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    static int lanes(){
+        return SPECIES.length();
+    }
+
+    // Min, max, sum, argmin and argmax of a[from..to) in one pass, written to
+    // out in that order. Every lane keeps its own min and max with the index
+    // it was first seen at; the lanes are combined once at the end, ties
+    // going to the lowest index. to must be greater than from.
+    static void stats(int a[], int from, int to, long out[]){
+        int step = SPECIES.length();
+        IntVector minV = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+        IntVector maxV = IntVector.broadcast(SPECIES, Integer.MIN_VALUE);
+        IntVector idx = IntVector.zero(SPECIES).addIndex(1).add(from);
+        // Start at the first vector's indices, so lanes that never beat the
+        // sentinel (all MAX_VALUE or all MIN_VALUE) still point inside the range
+        IntVector minI = idx, maxI = idx;
+        IntVector stepV = IntVector.broadcast(SPECIES, step);
+        LongVector sumV = LongVector.zero(LONGS);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += step){
+            IntVector v = IntVector.fromArray(SPECIES, a, i);
+            VectorMask<Integer> lt = v.compare(VectorOperators.LT, minV);
+            minV = minV.blend(v, lt);
+            minI = minI.blend(idx, lt);
+            VectorMask<Integer> gt = v.compare(VectorOperators.GT, maxV);
+            maxV = maxV.blend(v, gt);
+            maxI = maxI.blend(idx, gt);
+            sumV = sumV.add(v.convertShape(VectorOperators.I2L, LONGS, 0))
+                       .add(v.convertShape(VectorOperators.I2L, LONGS, 1));
+            idx = idx.add(stepV);
+        }
+
+        int min = minV.reduceLanes(VectorOperators.MIN);
+        int max = maxV.reduceLanes(VectorOperators.MAX);
+        long argMin = Integer.MAX_VALUE, argMax = Integer.MAX_VALUE;
+        if (i > from){
+            argMin = minI.lanewise(VectorOperators.MAX, Integer.MAX_VALUE, minV.compare(VectorOperators.NE, min))
+                         .reduceLanes(VectorOperators.MIN);
+            argMax = maxI.lanewise(VectorOperators.MAX, Integer.MAX_VALUE, maxV.compare(VectorOperators.NE, max))
+                         .reduceLanes(VectorOperators.MIN);
+        }
+        long sum = sumV.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++){
+            int v = a[i];
+            if (v < min || argMin == Integer.MAX_VALUE){
+                min = v;
+                argMin = i;
+            }
+            if (v > max || argMax == Integer.MAX_VALUE){
+                max = v;
+                argMax = i;
+            }
+            sum += v;
+        }
+        out[0] = min;
+        out[1] = max;
+        out[2] = sum;
+        out[3] = argMin;
+        out[4] = argMax;
+    }
+}
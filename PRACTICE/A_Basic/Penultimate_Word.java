@@ -1,18 +1,143 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class Penultimate_Word{
-    public static void main(String [] args){
+
+    // A word inside some text, without copying it. The same view is reused
+    // for every lookup; toString() copies only when asked.
+    static class WordView implements CharSequence {
+        private CharSequence text;
+        private int start, end;
+
+        void set(CharSequence text, int start, int end){
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int length(){
+            return end - start;
+        }
+
+        public char charAt(int index){
+            if (index < 0 || index >= end - start)
+                throw new IndexOutOfBoundsException(index);
+            return text.charAt(start + index);
+        }
+
+        public CharSequence subSequence(int from, int to){
+            if (from < 0 || from > to || to > end - start)
+                throw new IndexOutOfBoundsException("from " + from + ", to " + to + ", length " + (end - start));
+            return text.subSequence(start + from, start + to);
+        }
+
+        public String toString(){
+            return text.subSequence(start, end).toString();
+        }
+    }
+
+    // Points view at the k-th word from the end (k = 1 is the last word,
+    // k = 2 the penultimate one) and returns true, or returns false if the
+    // text has fewer than k words. Words are separated by any run of
+    // whitespace, so leading, trailing and repeated spaces don't count.
+    static boolean kthLastWord(CharSequence text, int k, WordView view){
+        if (k < 1)
+            throw new IllegalArgumentException("k must be >= 1: " + k);
+        int i = text.length();
+        while (true){
+            while (i > 0 && Character.isWhitespace(text.charAt(i - 1)))
+                i--;
+            if (i == 0)
+                return false;
+            int end = i;
+            while (i > 0 && !Character.isWhitespace(text.charAt(i - 1)))
+                i--;
+            if (--k == 0){
+                view.set(text, i, end);
+                return true;
+            }
+        }
+    }
+
+    static final int BLOCK = 1 << 16;
+
+    // ASCII whitespace; these bytes never occur inside a multi-byte UTF-8
+    // character, so the file can be scanned as raw bytes
+    static boolean isSpace(byte b){
+        return b == ' ' || (b >= '\t' && b <= '\r');
+    }
+
+    // The k-th word from the end of a UTF-8 file, or null if there are fewer
+    // than k words. Reads blocks backwards from the end, so only the tail of
+    // the file that holds the last k words is ever read.
+    static String kthLastWord(Path file, int k) throws IOException {
+        if (k < 1)
+            throw new IllegalArgumentException("k must be >= 1: " + k);
+        ByteBuffer buf = ByteBuffer.allocate(BLOCK);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)){
+            long wordEnd = -1;                  // end of the word being scanned, -1 between words
+            for (long end = ch.size(); end > 0; ){
+                long start = Math.max(0, end - BLOCK);
+                buf.clear().limit((int) (end - start));
+                while (buf.hasRemaining())
+                    if (ch.read(buf, start + buf.position()) < 0)
+                        throw new IOException("File shrank while reading: " + file);
+                byte b[] = buf.array();
+                for (int i = (int) (end - start) - 1; i >= 0; i--){
+                    if (!isSpace(b[i])){
+                        if (wordEnd < 0)
+                            wordEnd = start + i + 1;
+                    }
+                    else if (wordEnd >= 0){
+                        if (--k == 0)
+                            return readWord(ch, start + i + 1, wordEnd);
+                        wordEnd = -1;
+                    }
+                }
+                end = start;
+            }
+            return wordEnd >= 0 && k == 1 ? readWord(ch, 0, wordEnd) : null;
+        }
+    }
+
+    static String readWord(FileChannel ch, long from, long to) throws IOException {
+        ByteBuffer word = ByteBuffer.allocate(Math.toIntExact(to - from));
+        while (word.hasRemaining())
+            ch.read(word, from + word.position());
+        return new String(word.array(), StandardCharsets.UTF_8);
+    }
+
+    // Usage: java Penultimate_Word                  asks for a string
+    //        java Penultimate_Word --file PATH [K]  prints the K-th last word of PATH (default 2)
+    public static void main(String [] args) throws IOException {
+        if (args.length > 1 && args[0].equals("--file")){
+            int k = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+            long t0 = System.nanoTime();
+            String word = kthLastWord(Paths.get(args[1]), k);
+            long nanos = System.nanoTime() - t0;
+            System.out.println(word != null ? "Word " + k + " from the end: " + word
+                    : "The file has fewer than " + k + " words");
+            System.out.printf("Found in %.3f ms%n", nanos / 1e6);
+            return;
+        }
+
         Scanner sc = new Scanner(System.in);
-        
+
         System.out.println("Enter a string: ");
         String str = sc.nextLine();
 
-        String [] words = str.split(" ");
+        WordView word = new WordView();
+        if (kthLastWord(str, 2, word))
+            System.out.println("Penultimate Word: " + word);
+        else
+            System.out.println("No penultimate word: the string has fewer than 2 words");
 
-        
-        System.out.println("Penultimate Word: " + words[words.length - 2]);
-        
-        
         sc.close();
     }
-}
\ No newline at end of file
+}
@@ -1,19 +1,268 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.BreakIterator;
 import java.util.*;
 
 public class String_Reverse{
-    public static void main(String [] args){
+
+    // Plain byte reversal, for Latin-1 text where every byte is one character
+    static void reverseLatin1(byte s[], int from, int to){
+        for (int i = from, j = to - 1; i < j; i++, j--){
+            byte t = s[i];
+            s[i] = s[j];
+            s[j] = t;
+        }
+    }
+
+    // Reverses UTF-16 units in place, nothing more
+    static void reverseUnits(char s[], int from, int to){
+        for (int i = from, j = to - 1; i < j; i++, j--){
+            char t = s[i];
+            s[i] = s[j];
+            s[j] = t;
+        }
+    }
+
+    // Reverses by code point: after the unit reversal every surrogate pair is
+    // backwards (low, high), so each one is swapped back
+    static void reverseCodePoints(char s[], int from, int to){
+        reverseUnits(s, from, to);
+        for (int i = from; i < to - 1; i++){
+            if (Character.isLowSurrogate(s[i]) && Character.isHighSurrogate(s[i + 1])){
+                char t = s[i];
+                s[i] = s[i + 1];
+                s[i + 1] = t;
+                i++;
+            }
+        }
+    }
+
+    // Reverses by user-visible character, so accents and other combining marks
+    // stay on their letter: every cluster is reversed on its own first, then
+    // the whole range, which puts the clusters back in their own order.
+    // Clusters are the ones java.text.BreakIterator knows about. Text with no
+    // '\r' and nothing from U+0300 up has one cluster per char, which skips it.
+    static void reverseGraphemes(char s[], int from, int to){
+        int i = from;
+        while (i < to && s[i] < 0x300 && s[i] != '\r')
+            i++;
+        if (i == to){
+            reverseUnits(s, from, to);
+            return;
+        }
+        BreakIterator it = BreakIterator.getCharacterInstance();
+        it.setText(new String(s, from, to - from));
+        int start = it.first();
+        for (int end = it.next(); end != BreakIterator.DONE; start = end, end = it.next()){
+            if (end - start > 1)
+                reverseUnits(s, from + start, from + end);
+        }
+        reverseUnits(s, from, to);
+    }
+
+    static final int UNITS = 0, CODE_POINTS = 1, GRAPHEMES = 2;
+
+    static String reverse(String str, int mode){
+        char s[] = str.toCharArray();
+        if (mode == GRAPHEMES)
+            reverseGraphemes(s, 0, s.length);
+        else if (mode == CODE_POINTS)
+            reverseCodePoints(s, 0, s.length);
+        else
+            reverseUnits(s, 0, s.length);
+        return new String(s);
+    }
+
+    // Files are mapped this much at a time, from the end backwards, so memory
+    // use stays the same whatever the file size
+    static final int WINDOW = 64 << 20;
+
+    static boolean isContinuation(byte b){
+        return (b & 0xC0) == 0x80;
+    }
+
+    // Writes the UTF-8 file reversed code point by code point. The start of a
+    // window, and of each block copied out of it, is moved forward past any
+    // continuation bytes, which go with the rest of their character into the
+    // next (lower) piece.
+    static void reverseFileCodePoints(Path in, Path out) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+        byte block[] = new byte[1 << 16], rev[] = new byte[1 << 16];
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)){
+            long end = src.size();
+            while (end > 0){
+                long start = Math.max(0, end - WINDOW);
+                MappedByteBuffer map = src.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                int lo = start > 0 ? utf8Start(map, 0, (int) (end - start)) : 0;
+                for (int hi = (int) (end - start); hi > lo; ){
+                    int from = hi - block.length > lo ? utf8Start(map, hi - block.length, hi) : lo;
+                    int n = hi - from;
+                    map.get(from, block, 0, n);
+                    for (int i = n, k = 0; i > 0; ){
+                        int j = i - 1;
+                        while (j > 0 && isContinuation(block[j]) && i - j < 4)
+                            j--;
+                        for (int c = j; c < i; c++)
+                            rev[k++] = block[c];
+                        i = j;
+                    }
+                    buf.put(rev, 0, n);
+                    drain(buf, dst);
+                    hi = from;
+                }
+                end = start + lo;
+            }
+        }
+    }
+
+    // First index at or after from that does not hold a continuation byte,
+    // or from itself if the bytes up to 'to' are not UTF-8 at all
+    static int utf8Start(ByteBuffer map, int from, int to){
+        int i = from;
+        while (i < to && i - from < 3 && isContinuation(map.get(i)))
+            i++;
+        return i < to ? i : from;
+    }
+
+    // Writes the lines of the file in reverse order, like tac. '\n' never
+    // occurs inside a UTF-8 character, so windows can end anywhere. Lines
+    // inside the current window are copied from the mapping, longer ones are
+    // handed to transferTo.
+    static void reverseFileLines(Path in, Path out) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel src = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel dst = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)){
+            long size = src.size(), lineEnd = size;
+            for (long end = size; end > 0; ){
+                long start = Math.max(0, end - WINDOW);
+                MappedByteBuffer map = src.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                for (int i = (int) (end - start) - 1; i >= 0; i--){
+                    if (map.get(i) != '\n')
+                        continue;
+                    long pos = start + i;
+                    if (pos != size - 1)                // a final '\n' does not start an empty line
+                        writeLine(src, map, start, end, pos + 1, lineEnd, buf, dst);
+                    lineEnd = pos;
+                }
+                if (start == 0 && size > 0)
+                    writeLine(src, map, start, end, 0, lineEnd, buf, dst);
+                end = start;
+            }
+            drain(buf, dst);
+        }
+    }
+
+    // Copies bytes [from, to) of the file plus a '\n'; the map covers [start, end)
+    static void writeLine(FileChannel src, MappedByteBuffer map, long start, long end, long from, long to,
+                          ByteBuffer buf, FileChannel dst) throws IOException {
+        int len = (int) Math.min(to - from, Integer.MAX_VALUE);
+        if (to <= end && len < buf.capacity()){
+            if (buf.remaining() < len + 1)
+                drain(buf, dst);
+            map.limit((int) (to - start)).position((int) (from - start));
+            buf.put(map);
+            map.clear();
+        }
+        else{
+            drain(buf, dst);
+            for (long pos = from; pos < to; )
+                pos += src.transferTo(pos, to - pos, dst);
+        }
+        buf.put((byte) '\n');
+    }
+
+    static void drain(ByteBuffer buf, FileChannel out) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining())
+            out.write(buf);
+        buf.clear();
+    }
+
+    // Times each mode on mb megabytes of text, against the old += loop on a
+    // small prefix (it is quadratic, so the full input would never finish)
+    static void benchmark(int mb){
+        int n = mb * 1_000_000;
+        Random rnd = new Random(1);
+        char s[] = new char[n];
+        for (int i = 0; i < n; i++){
+            int r = rnd.nextInt(100);
+            if (r == 0 && i + 1 < n){
+                Character.toChars(0x1F600 + rnd.nextInt(64), s, i);        // an emoji, as a surrogate pair
+                i++;
+            }
+            else if (r == 1 && i > 0)
+                s[i] = '\u0301';                                        // combining acute accent
+            else
+                s[i] = (char) ('a' + rnd.nextInt(26));
+        }
+        byte latin[] = new String(s).getBytes(StandardCharsets.ISO_8859_1);
+
+        String prefix = new String(s, 0, 50_000);
+        long t0 = System.nanoTime();
+        String rev = "";
+        for (int i = prefix.length() - 1; i >= 0; i--)
+            rev += prefix.charAt(i);
+        long oldNanos = System.nanoTime() - t0;
+        System.out.printf("old += loop: %.1f ms for %d chars%n", oldNanos / 1e6, rev.length());
+
+        for (int round = 0; round < 2; round++){        // first round warms up the JIT
+            t0 = System.nanoTime();
+            reverseLatin1(latin, 0, latin.length);
+            long t1 = System.nanoTime();
+            reverseCodePoints(s, 0, n);
+            long t2 = System.nanoTime();
+            reverseGraphemes(s, 0, n);
+            long t3 = System.nanoTime();
+            if (round == 1){
+                System.out.printf("Latin-1 bytes: %.1f ms (%.0f MB/s)%n", (t1 - t0) / 1e6, mb / ((t1 - t0) / 1e9));
+                System.out.printf("code points:   %.1f ms (%.0f MB/s)%n", (t2 - t1) / 1e6, mb / ((t2 - t1) / 1e9));
+                System.out.printf("graphemes:     %.1f ms (%.0f MB/s)%n", (t3 - t2) / 1e6, mb / ((t3 - t2) / 1e9));
+            }
+        }
+    }
+
+    // Usage: java String_Reverse                         asks for a string
+    //        java String_Reverse --bench MB              times the modes on MB megabytes of text
+    //        java String_Reverse --file IN OUT [--lines] reverses file IN into OUT, by code
+    //                                                    point or by line order
+    public static void main(String [] args) throws IOException {
+        if (args.length > 2 && args[0].equals("--file")){
+            Path in = Paths.get(args[1]), out = Paths.get(args[2]);
+            boolean lines = args.length > 3 && args[3].equals("--lines");
+            long t0 = System.nanoTime();
+            if (lines)
+                reverseFileLines(in, out);
+            else
+                reverseFileCodePoints(in, out);
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            double mb = Files.size(in) / 1e6;
+            System.out.printf("Reversed %.1f MB %s in %.3f s (%.1f MB/s)%n", mb, lines ? "by line" : "by code point",
+                    seconds, mb / seconds);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--bench")){
+            benchmark(Integer.parseInt(args[1]));
+            return;
+        }
+
         Scanner sc = new Scanner(System.in);
 
         System.out.println("Enter String: ");
         String str = sc.nextLine();
-        
-        String rev = "";
 
-        for(int i = str.length() - 1; i >= 0; i--){
-            rev += str.charAt(i);
-        }
+        String rev = reverse(str, GRAPHEMES);
 
         System.out.println("Reversed String: "+rev);
         sc.close();
     }
-}
\ No newline at end of file
+}
@@ -6,47 +6,1001 @@
 // A password must contain at least two digits.
 
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Valid_Password {
 
+    // A rule set, read from lines like these ('#' starts a comment):
+    //   min_length = 10
+    //   max_length = 64
+    //   allowed = letters digits          any of: letters upper lower digits symbols
+    //   min_digits = 2                    also min_upper, min_lower, min_letters, min_symbols
+    //   forbid = password                 a sequence that may not occur, ignoring case;
+    //   forbid = 1234                     one per line, as many as needed
+    //   max_repeat = 3                    longest run of one repeated character
+    // and compiled once into tables, so that a check is a single pass over the
+    // password whatever rules are set: every character is classified, counted,
+    // and moves one Aho-Corasick automaton that matches all forbidden
+    // sequences at once. Each rule in use gets one bit of the check result;
+    // the automaton and the run tracking are skipped when their rule is unset.
+    static class RuleSet {
+        // Character classes; any letter that is not upper case counts as lower, and
+        // upper-case non-letters such as Roman numerals or circled capitals are symbols
+        static final int DIGIT = 0, UPPER = 1, LOWER = 2, SYMBOL = 3;
+        static final String CLASS_NAMES[] = {"digits", "upper", "lower", "symbols"};
+        static final byte ASCII_CLASS[] = new byte[128];
+        // What an ASCII char adds to the four class counts packed into 16-bit
+        // fields of one long, as check(byte[], ...) keeps them
+        static final long ASCII_COUNT[] = new long[128];
+
+        static {
+            for (int c = 0; c < 128; c++){
+                ASCII_CLASS[c] = (byte) (c >= '0' && c <= '9' ? DIGIT : c >= 'A' && c <= 'Z' ? UPPER
+                        : c >= 'a' && c <= 'z' ? LOWER : SYMBOL);
+                ASCII_COUNT[c] = 1L << (ASCII_CLASS[c] << 4);
+            }
+        }
+
+        static int classOf(char c){
+            if (c < 128)
+                return ASCII_CLASS[c];
+            return Character.isDigit(c) ? DIGIT : !Character.isLetter(c) ? SYMBOL
+                    : Character.isUpperCase(c) ? UPPER : LOWER;
+        }
+
+        int minLength = 0, maxLength = Integer.MAX_VALUE, maxRepeat = Integer.MAX_VALUE;
+        int minClass[] = new int[4], minLetters = 0;
+        int allowed = 0xF;
+        String allowedText;
+        final List<String> forbidden = new ArrayList<>();
+
+        // Compiled form
+        final List<String> names = new ArrayList<>();
+        int shortBit, longBit, allowedBit, classBit[] = new int[4], lettersBit, forbiddenBit, repeatBit;
+        long disallowedCounts;      // the 16-bit count fields of classes that are not allowed
+        boolean hasMinimums;        // some class or letter minimum is set
+        char symbol[];              // case-folded char to automaton input, 0 for chars in no sequence
+        int width;                  // automaton inputs
+        int delta[];                // next state = delta[state * width + input]
+        boolean accept[];           // a forbidden sequence ends here
+
+        static RuleSet parse(List<String> lines){
+            RuleSet rs = new RuleSet();
+            for (int n = 0; n < lines.size(); n++){
+                String line = lines.get(n);
+                int hash = line.indexOf('#');
+                if (hash >= 0)
+                    line = line.substring(0, hash);
+                if (line.isBlank())
+                    continue;
+                int eq = line.indexOf('=');
+                if (eq < 0)
+                    throw new IllegalArgumentException("Expected 'rule = value' on line " + (n + 1));
+                String key = line.substring(0, eq).trim(), value = line.substring(eq + 1).trim();
+                try {
+                    switch (key){
+                        case "min_length": rs.minLength = Integer.parseInt(value); break;
+                        case "max_length": rs.maxLength = Integer.parseInt(value); break;
+                        case "max_repeat": rs.maxRepeat = Integer.parseInt(value); break;
+                        case "min_letters": rs.minLetters = Integer.parseInt(value); break;
+                        case "min_digits": rs.minClass[DIGIT] = Integer.parseInt(value); break;
+                        case "min_upper": rs.minClass[UPPER] = Integer.parseInt(value); break;
+                        case "min_lower": rs.minClass[LOWER] = Integer.parseInt(value); break;
+                        case "min_symbols": rs.minClass[SYMBOL] = Integer.parseInt(value); break;
+                        case "forbid":
+                            if (value.isEmpty())
+                                throw new IllegalArgumentException("Empty sequence");
+                            rs.forbidden.add(value);
+                            break;
+                        case "allowed":
+                            rs.allowed = 0;
+                            for (String word : value.split("\\s+")){
+                                if (word.equals("letters"))
+                                    rs.allowed |= 1 << UPPER | 1 << LOWER;
+                                else if (Arrays.asList(CLASS_NAMES).contains(word))
+                                    rs.allowed |= 1 << Arrays.asList(CLASS_NAMES).indexOf(word);
+                                else
+                                    throw new IllegalArgumentException("Unknown class '" + word + "'");
+                            }
+                            rs.allowedText = String.join(" and ", value.split("\\s+"));
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unknown rule '" + key + "'");
+                    }
+                } catch (IllegalArgumentException e){
+                    throw new IllegalArgumentException(e.getMessage() + " on line " + (n + 1), e);
+                }
+            }
+            rs.compile();
+            return rs;
+        }
+
+        static RuleSet load(Path file) throws IOException {
+            return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+        }
+
+        // The rules of the original checker
+        static final RuleSet DEFAULT = parse(List.of("min_length = 10", "allowed = letters digits", "min_digits = 2"));
+
+        int bit(String name){
+            names.add(name);
+            return 1 << (names.size() - 1);
+        }
+
+        void compile(){
+            if (minLength > 0)
+                shortBit = bit("shorter than " + minLength);
+            if (maxLength < Integer.MAX_VALUE)
+                longBit = bit("longer than " + maxLength);
+            if (allowed != 0xF)
+                allowedBit = bit("not only " + allowedText);
+            for (int c = 0; c < 4; c++){
+                if ((allowed & 1 << c) == 0)
+                    disallowedCounts |= 0xFFFFL << (c << 4);
+                if (minClass[c] > 0){
+                    classBit[c] = bit("fewer than " + minClass[c] + " " + CLASS_NAMES[c]);
+                    hasMinimums = true;
+                }
+            }
+            if (minLetters > 0){
+                lettersBit = bit("fewer than " + minLetters + " letters");
+                hasMinimums = true;
+            }
+            if (!forbidden.isEmpty())
+                forbiddenBit = bit("has a forbidden sequence");
+            if (maxRepeat < Integer.MAX_VALUE)
+                repeatBit = bit("a character repeated over " + maxRepeat + " times");
+            if (names.size() > 30)
+                throw new IllegalArgumentException("Too many rules");
+            if (!forbidden.isEmpty())
+                buildAutomaton();           // its 64K-entry input table is not needed otherwise
+        }
+
+        // Aho-Corasick: a trie of the folded sequences, completed into a DFA
+        // through the failure links, so every character is one table lookup
+        void buildAutomaton(){
+            symbol = new char[65536];
+            width = 1;
+            for (String f : forbidden)
+                for (char c : f.toLowerCase(Locale.ROOT).toCharArray())
+                    if (symbol[c] == 0)
+                        symbol[c] = (char) width++;
+            for (int c = 0; c < 65536; c++)
+                symbol[c] = symbol[Character.toLowerCase((char) c)];
+
+            List<int[]> trie = new ArrayList<>();
+            List<Boolean> ends = new ArrayList<>();
+            trie.add(new int[width]);
+            ends.add(false);
+            for (String f : forbidden){
+                int s = 0;
+                for (char c : f.toLowerCase(Locale.ROOT).toCharArray()){
+                    int a = symbol[c];
+                    if (trie.get(s)[a] == 0){
+                        trie.get(s)[a] = trie.size();
+                        trie.add(new int[width]);
+                        ends.add(false);
+                    }
+                    s = trie.get(s)[a];
+                }
+                ends.set(s, true);
+            }
+
+            int states = trie.size();
+            delta = new int[states * width];
+            accept = new boolean[states];
+            int fail[] = new int[states];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int a = 0; a < width; a++){
+                int t = trie.get(0)[a];
+                delta[a] = t;
+                if (t != 0)
+                    queue.add(t);
+            }
+            accept[0] = false;
+            while (!queue.isEmpty()){
+                int s = queue.poll();
+                accept[s] = ends.get(s) || accept[fail[s]];
+                for (int a = 0; a < width; a++){
+                    int t = trie.get(s)[a];
+                    if (t != 0){
+                        fail[t] = delta[fail[s] * width + a];
+                        delta[s * width + a] = t;
+                        queue.add(t);
+                    }
+                    else
+                        delta[s * width + a] = delta[fail[s] * width + a];
+                }
+            }
+        }
+
+        int states(){
+            return accept == null ? 0 : accept.length;
+        }
+
+        // The rules the password breaks, as bits, 0 if it passes them all
+        int check(CharSequence password){
+            int len = password.length();
+            int digits = 0, upper = 0, lower = 0, symbols = 0;
+            int state = 0, run = 0, longestRun = 0;
+            boolean hit = false;
+            char prev = 0;
+            for (int i = 0; i < len; i++){
+                char c = password.charAt(i);
+                switch (classOf(c)){
+                    case DIGIT: digits++; break;
+                    case UPPER: upper++; break;
+                    case LOWER: lower++; break;
+                    default: symbols++;
+                }
+                if (forbiddenBit != 0){
+                    state = delta[state * width + symbol[c]];
+                    hit |= accept[state];
+                }
+                if (repeatBit != 0){
+                    run = c == prev ? run + 1 : 1;
+                    longestRun = Math.max(longestRun, run);
+                    prev = c;
+                }
+            }
+            return result(len, digits, upper, lower, symbols, hit, longestRun);
+        }
+
+        // Same as check(CharSequence), on the UTF-8 bytes b[from..to). ASCII
+        // goes straight through the tables, with the four class counts packed
+        // into 16-bit fields of one long; anything else is decoded first and
+        // DECODED is set in the result. Lines too long for those fields are
+        // decoded too. There is one loop per combination of the automaton and
+        // the run tracking, so each keeps only the state its rules need and
+        // the default rules are a bare count; the loops are separate methods
+        // so that this one stays small enough to be inlined into the caller.
+        int check(byte b[], int from, int to){
+            if (to - from > 0xFFFF)
+                return check(new String(b, from, to - from, StandardCharsets.UTF_8));
+            if (forbiddenBit == 0)
+                return repeatBit == 0 ? countOnly(b, from, to) : withRuns(b, from, to);
+            return repeatBit == 0 ? withAutomaton(b, from, to) : withAutomatonAndRuns(b, from, to);
+        }
+
+        private int countOnly(byte b[], int from, int to){
+            long counts = 0;
+            for (int i = from; i < to; i++){
+                int c = b[i];
+                if (c < 0)
+                    return decoded(b, from, to);
+                counts += ASCII_COUNT[c];
+            }
+            return result(to - from, counts, false, 0);
+        }
+
+        private int withAutomaton(byte b[], int from, int to){
+            long counts = 0;
+            int state = 0;
+            boolean hit = false;
+            for (int i = from; i < to; i++){
+                int c = b[i];
+                if (c < 0)
+                    return decoded(b, from, to);
+                counts += ASCII_COUNT[c];
+                state = delta[state * width + symbol[c]];
+                hit |= accept[state];
+            }
+            return result(to - from, counts, hit, 0);
+        }
+
+        private int withRuns(byte b[], int from, int to){
+            long counts = 0;
+            int run = 0, longestRun = 0, prev = 0;
+            for (int i = from; i < to; i++){
+                int c = b[i];
+                if (c < 0)
+                    return decoded(b, from, to);
+                counts += ASCII_COUNT[c];
+                run = c == prev ? run + 1 : 1;
+                longestRun = Math.max(longestRun, run);
+                prev = c;
+            }
+            return result(to - from, counts, false, longestRun);
+        }
+
+        private int withAutomatonAndRuns(byte b[], int from, int to){
+            long counts = 0;
+            int state = 0, run = 0, longestRun = 0, prev = 0;
+            boolean hit = false;
+            for (int i = from; i < to; i++){
+                int c = b[i];
+                if (c < 0)
+                    return decoded(b, from, to);
+                counts += ASCII_COUNT[c];
+                state = delta[state * width + symbol[c]];
+                hit |= accept[state];
+                run = c == prev ? run + 1 : 1;
+                longestRun = Math.max(longestRun, run);
+                prev = c;
+            }
+            return result(to - from, counts, hit, longestRun);
+        }
+
+        int decoded(byte b[], int from, int to){
+            return check(new String(b, from, to - from, StandardCharsets.UTF_8)) | DECODED;
+        }
+
+        // result() on packed counts: the allowed classes are one mask test, the
+        // class minimums are only looked at when some are set, and every test
+        // is a select rather than a branch, since whether a password is too
+        // short or has a symbol is a coin toss the CPU cannot predict
+        int result(int len, long counts, boolean hit, int longestRun){
+            int failed = (len < minLength ? shortBit : 0) | (len > maxLength ? longBit : 0)
+                    | ((counts & disallowedCounts) != 0 ? allowedBit : 0)
+                    | (hit ? forbiddenBit : 0) | (longestRun > maxRepeat ? repeatBit : 0);
+            if (hasMinimums){
+                int upper = (int) (counts >>> 16) & 0xFFFF, lower = (int) (counts >>> 32) & 0xFFFF;
+                failed |= (((int) counts & 0xFFFF) < minClass[DIGIT] ? classBit[DIGIT] : 0)
+                        | (upper < minClass[UPPER] ? classBit[UPPER] : 0)
+                        | (lower < minClass[LOWER] ? classBit[LOWER] : 0)
+                        | ((int) (counts >>> 48) < minClass[SYMBOL] ? classBit[SYMBOL] : 0)
+                        | (upper + lower < minLetters ? lettersBit : 0);
+            }
+            return failed;
+        }
+
+        int result(int len, int digits, int upper, int lower, int symbols, boolean hit, int longestRun){
+            int failed = 0;
+            if (len < minLength)
+                failed |= shortBit;
+            if (len > maxLength)
+                failed |= longBit;
+            int seen = (digits > 0 ? 1 << DIGIT : 0) | (upper > 0 ? 1 << UPPER : 0)
+                    | (lower > 0 ? 1 << LOWER : 0) | (symbols > 0 ? 1 << SYMBOL : 0);
+            if ((seen & ~allowed) != 0)
+                failed |= allowedBit;
+            if (digits < minClass[DIGIT])
+                failed |= classBit[DIGIT];
+            if (upper < minClass[UPPER])
+                failed |= classBit[UPPER];
+            if (lower < minClass[LOWER])
+                failed |= classBit[LOWER];
+            if (symbols < minClass[SYMBOL])
+                failed |= classBit[SYMBOL];
+            if (upper + lower < minLetters)
+                failed |= lettersBit;
+            if (hit)
+                failed |= forbiddenBit;
+            if (longestRun > maxRepeat)
+                failed |= repeatBit;
+            return failed;
+        }
+    }
+
+    // Set in a result of RuleSet.check(byte[], ...) when the password had to be decoded
+    static final int DECODED = 1 << 30;
+
     static boolean Password_Checker(String password){
+        return RuleSet.DEFAULT.check(password) == 0;
+    }
+
+    // A corpus of breached passwords, as SHA-1 hashes in two files that
+    // --build-breach writes and open() memory-maps:
+    //   PREFIX.bloom   a blocked Bloom filter: every hash sets k bits inside
+    //                  one 512-bit block, so a lookup touches one cache line
+    //   PREFIX.sorted  the hashes themselves, sorted, after a table of where
+    //                  each 16-bit prefix starts
+    // A lookup asks the filter first and only searches the sorted hashes when
+    // the filter says maybe, so the answer is exact.
+    static class BreachList implements Closeable {
+        static final long BLOOM_MAGIC = 0x424c4f4f_4d763031L;         // "BLOOMv01"
+        static final long SORTED_MAGIC = 0x534f5254_45443031L;        // "SORTED01"
+        static final int HASH = 20, HEADER = 64, BLOCK = 64;
+        static final int PREFIXES = 1 << 16;
+        static final int INDEX = HEADER + (PREFIXES + 1) * Long.BYTES;
+
+        // Files over 2 GB are mapped in segments of whole blocks / records
+        static final int BLOCKS_PER_SEGMENT = 1 << 24, RECORDS_PER_SEGMENT = 1 << 26;
+
+        static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+        static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+        static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e){
+                throw new IllegalStateException(e);
+            }
+        });
+
+        static byte[] sha1(byte b[], int from, int to){
+            MessageDigest md = SHA1.get();
+            md.update(b, from, to - from);
+            return md.digest();
+        }
+
+        static byte[] sha1(String password){
+            byte b[] = password.getBytes(StandardCharsets.UTF_8);
+            return sha1(b, 0, b.length);
+        }
+
+        final FileChannel bloomCh, sortedCh;
+        final MappedByteBuffer bloom[], sorted[];
+        final MappedByteBuffer index;
+        final long blocks, count;
+        final int k;
+        final double bitsPerKey;
+
+        // Maps both files; if either is missing or not what it should be, the
+        // channels opened so far are closed again before the exception leaves
+        BreachList(Path prefix) throws IOException {
+            bloomCh = FileChannel.open(Paths.get(prefix + ".bloom"), StandardOpenOption.READ);
+            try {
+                sortedCh = FileChannel.open(Paths.get(prefix + ".sorted"), StandardOpenOption.READ);
+            } catch (IOException | RuntimeException e){
+                closeAfter(e, bloomCh);
+                throw e;
+            }
+            try {
+                MappedByteBuffer header = bloomCh.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+                if (header.getLong(0) != BLOOM_MAGIC)
+                    throw new IOException(prefix + ".bloom is not a Bloom filter");
+                blocks = header.getLong(8);
+                k = header.getInt(16);
+                bitsPerKey = header.getDouble(24);
+                bloom = new MappedByteBuffer[(int) ((blocks + BLOCKS_PER_SEGMENT - 1) / BLOCKS_PER_SEGMENT)];
+                for (int s = 0; s < bloom.length; s++){
+                    long first = (long) s * BLOCKS_PER_SEGMENT;
+                    bloom[s] = bloomCh.map(FileChannel.MapMode.READ_ONLY, HEADER + first * BLOCK,
+                            Math.min(BLOCKS_PER_SEGMENT, blocks - first) * BLOCK);
+                }
+
+                header = sortedCh.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+                if (header.getLong(0) != SORTED_MAGIC)
+                    throw new IOException(prefix + ".sorted is not a sorted hash list");
+                count = header.getLong(8);
+                index = sortedCh.map(FileChannel.MapMode.READ_ONLY, HEADER, (PREFIXES + 1) * Long.BYTES);
+                sorted = new MappedByteBuffer[(int) ((count + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT)];
+                for (int s = 0; s < sorted.length; s++){
+                    long first = (long) s * RECORDS_PER_SEGMENT;
+                    sorted[s] = sortedCh.map(FileChannel.MapMode.READ_ONLY, INDEX + first * HASH,
+                            Math.min(RECORDS_PER_SEGMENT, count - first) * HASH);
+                }
+            } catch (IOException | RuntimeException e){
+                closeAfter(e, bloomCh, sortedCh);
+                throw e;
+            }
+        }
+
+        // Closes channels after e was thrown, keeping e as the exception that counts
+        static void closeAfter(Exception e, FileChannel... channels){
+            for (FileChannel ch : channels){
+                try {
+                    ch.close();
+                } catch (IOException suppressed){
+                    e.addSuppressed(suppressed);
+                }
+            }
+        }
 
-        int numcount = 0;
+        public void close() throws IOException {
+            bloomCh.close();
+            sortedCh.close();
+        }
 
-        if(password.length() < 10){
-           return false;
+        // The block of a hash comes from its first 8 bytes, and the k bit
+        // positions from the next 8: they seed a 64-bit LCG whose top 9 bits
+        // give one position per step. (Double hashing inside a 512-bit block
+        // would only allow 2^17 different bit patterns, and visibly raises the
+        // false positive rate once k gets past 8 or so.)
+        static long block(byte hash[], long blocks){
+            return ((long) LONG_BE.get(hash, 0) >>> 1) % blocks;
         }
 
-        for(int i=0;i<password.length();i++){
-            char ch = password.charAt(i);
+        static long bitSeed(byte hash[]){
+            return (long) LONG_BE.get(hash, 8);
+        }
+
+        static long nextBits(long x){
+            return x * 6364136223846793005L + 1442695040888963407L;
+        }
 
-            if(Character.isDigit(ch)){
-                numcount++;
-            }else if(!Character.isLetter(ch)){
-                return false;
+        // False means the hash is certainly not in the corpus
+        boolean mightContain(byte hash[]){
+            long block = block(hash, blocks);
+            MappedByteBuffer seg = bloom[(int) (block / BLOCKS_PER_SEGMENT)];
+            int base = (int) (block % BLOCKS_PER_SEGMENT) * BLOCK;
+            long x = bitSeed(hash);
+            for (int i = 0; i < k; i++){
+                x = nextBits(x);
+                int bit = (int) (x >>> 55);
+                if ((seg.getLong(base + (bit >>> 6) * Long.BYTES) & 1L << bit) == 0)
+                    return false;
             }
+            return true;
         }
 
-        if (numcount < 2) {
+        // Binary search of the sorted hashes, within the range of its 16-bit prefix
+        boolean containsExact(byte hash[]){
+            long k0 = (long) LONG_BE.get(hash, 0), k1 = (long) LONG_BE.get(hash, 8);
+            int k2 = (int) INT_BE.get(hash, 16);
+            int prefix = (int) (k0 >>> 48);
+            long lo = index.getLong(prefix * Long.BYTES), hi = index.getLong((prefix + 1) * Long.BYTES);
+            while (lo < hi){
+                long mid = (lo + hi) >>> 1;
+                MappedByteBuffer seg = sorted[(int) (mid / RECORDS_PER_SEGMENT)];
+                int off = (int) (mid % RECORDS_PER_SEGMENT) * HASH;
+                int c = Long.compareUnsigned(seg.getLong(off), k0);
+                if (c == 0)
+                    c = Long.compareUnsigned(seg.getLong(off + 8), k1);
+                if (c == 0)
+                    c = Integer.compareUnsigned(seg.getInt(off + 16), k2);
+                if (c == 0)
+                    return true;
+                if (c < 0)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
             return false;
         }
 
-        return true;
+        boolean contains(byte hash[]){
+            return mightContain(hash) && containsExact(hash);
+        }
+
+        boolean contains(String password){
+            return contains(sha1(password));
+        }
+
+        // Reads hashes, one per line: 40 hex digits, optionally followed by
+        // ':count' as in the usual breach dumps. Any other line is taken to be
+        // a plain password and hashed. Returns the hashes, HASH bytes each.
+        static byte[] readHashes(Path file, long counter[]) throws IOException {
+            byte all[] = new byte[HASH * 1024];
+            int n = 0;
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+                String line;
+                while ((line = in.readLine()) != null){
+                    if (line.isEmpty())
+                        continue;
+                    if ((long) (n + 1) * HASH > Integer.MAX_VALUE - 8)
+                        throw new IOException("More hashes than fit in memory for sorting");
+                    if ((n + 1) * HASH > all.length)
+                        all = Arrays.copyOf(all, (int) Math.min(Integer.MAX_VALUE - 8, 2L * all.length));
+                    byte hash[] = parseHex(line);
+                    if (hash == null)
+                        hash = sha1(line);
+                    System.arraycopy(hash, 0, all, n * HASH, HASH);
+                    n++;
+                }
+            }
+            counter[0] = n;
+            return all;
+        }
+
+        static byte[] parseHex(String line){
+            if (line.length() < 2 * HASH || (line.length() > 2 * HASH && line.charAt(2 * HASH) != ':'))
+                return null;
+            byte hash[] = new byte[HASH];
+            for (int i = 0; i < 2 * HASH; i++){
+                int d = Character.digit(line.charAt(i), 16);
+                if (d < 0)
+                    return null;
+                hash[i / 2] |= d << (i % 2 == 0 ? 4 : 0);
+            }
+            return hash;
+        }
+
+        // Sorts the HASH-byte records r[lo..hi) in unsigned byte order
+        static void sortRecords(byte r[], int lo, int hi, byte pivot[], byte tmp[]){
+            while (hi - lo > 16){
+                System.arraycopy(r, (lo + ThreadLocalRandom.current().nextInt(hi - lo)) * HASH, pivot, 0, HASH);
+                int i = lo, j = hi - 1;
+                while (i <= j){
+                    while (Arrays.compareUnsigned(r, i * HASH, i * HASH + HASH, pivot, 0, HASH) < 0)
+                        i++;
+                    while (Arrays.compareUnsigned(r, j * HASH, j * HASH + HASH, pivot, 0, HASH) > 0)
+                        j--;
+                    if (i <= j)
+                        swap(r, i++, j--, tmp);
+                }
+                if (j - lo < hi - i){           // recurse into the smaller side
+                    sortRecords(r, lo, j + 1, pivot, tmp);
+                    lo = i;
+                }
+                else{
+                    sortRecords(r, i, hi, pivot, tmp);
+                    hi = j + 1;
+                }
+            }
+            for (int i = lo + 1; i < hi; i++)
+                for (int j = i; j > lo; j--){
+                    if (Arrays.compareUnsigned(r, (j - 1) * HASH, j * HASH, r, j * HASH, j * HASH + HASH) <= 0)
+                        break;
+                    swap(r, j - 1, j, tmp);
+                }
+        }
+
+        static void swap(byte r[], int i, int j, byte tmp[]){
+            System.arraycopy(r, i * HASH, tmp, 0, HASH);
+            System.arraycopy(r, j * HASH, r, i * HASH, HASH);
+            System.arraycopy(tmp, 0, r, j * HASH, HASH);
+        }
+
+        // False positive rate of a blocked filter with the given bits per hash
+        // and k: the hashes per block follow a Poisson distribution, and a
+        // block holding c of them answers maybe with (1 - (1 - 1/512)^(kc))^k
+        static double blockedFpr(double bitsPerKey, int k){
+            double mean = BLOCK * 8 / bitsPerKey, p = Math.exp(-mean), sum = 0;
+            for (int c = 0; c < mean * 4 + 64; c++){
+                sum += p * Math.pow(1 - Math.pow(1 - 1.0 / (BLOCK * 8), (double) k * c), k);
+                p *= mean / (c + 1);
+            }
+            return sum;
+        }
+
+        // Writes PREFIX.sorted and PREFIX.bloom for the hashes listed in file.
+        // A blocked filter needs more bits than the usual -ln(p) / ln(2)^2 for
+        // the same rate, so bits per hash grow from there until blockedFpr()
+        // meets the target.
+        static long build(Path file, Path prefix, double fpr) throws IOException {
+            long counter[] = new long[1];
+            byte r[] = readHashes(file, counter);
+            int n = (int) counter[0];
+            sortRecords(r, 0, n, new byte[HASH], new byte[HASH]);
+            int unique = 0;
+            for (int i = 0; i < n; i++){
+                if (unique > 0 && Arrays.compareUnsigned(r, (unique - 1) * HASH, unique * HASH,
+                        r, i * HASH, i * HASH + HASH) == 0)
+                    continue;
+                System.arraycopy(r, i * HASH, r, unique * HASH, HASH);
+                unique++;
+            }
+
+            long prefixStart[] = new long[PREFIXES + 1];
+            for (int i = 0, p = 0; p <= PREFIXES; p++){
+                while (i < unique && ((r[i * HASH] & 0xff) << 8 | (r[i * HASH + 1] & 0xff)) < p)
+                    i++;
+                prefixStart[p] = i;
+            }
+            try (FileChannel out = FileChannel.open(Paths.get(prefix + ".sorted"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+                ByteBuffer head = ByteBuffer.allocate(INDEX);
+                head.putLong(SORTED_MAGIC).putLong(unique).position(HEADER);
+                head.asLongBuffer().put(prefixStart);
+                writeFully(out, head.clear(), 0);
+                writeFully(out, ByteBuffer.wrap(r, 0, unique * HASH), INDEX);
+            }
+
+            double bitsPerKey = -Math.log(fpr) / (Math.log(2) * Math.log(2));
+            int k;
+            while (true){
+                k = (int) Math.max(1, Math.min(16, Math.round(bitsPerKey * Math.log(2))));
+                if (blockedFpr(bitsPerKey, k) <= fpr || bitsPerKey > 64)
+                    break;
+                bitsPerKey += 0.25;
+            }
+            long blocks = Math.max(1, (long) Math.ceil(unique * bitsPerKey / (BLOCK * 8)));
+            try (FileChannel out = FileChannel.open(Paths.get(prefix + ".bloom"), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+                ByteBuffer head = ByteBuffer.allocate(HEADER);
+                head.putLong(BLOOM_MAGIC).putLong(blocks).putInt(k).putInt(0).putDouble(bitsPerKey).putLong(unique);
+                writeFully(out, head.clear(), 0);
+                MappedByteBuffer seg[] = new MappedByteBuffer[(int) ((blocks + BLOCKS_PER_SEGMENT - 1) / BLOCKS_PER_SEGMENT)];
+                for (int s = 0; s < seg.length; s++){
+                    long first = (long) s * BLOCKS_PER_SEGMENT;
+                    seg[s] = out.map(FileChannel.MapMode.READ_WRITE, HEADER + first * BLOCK,
+                            Math.min(BLOCKS_PER_SEGMENT, blocks - first) * BLOCK);
+                }
+                byte hash[] = new byte[HASH];
+                for (int i = 0; i < unique; i++){
+                    System.arraycopy(r, i * HASH, hash, 0, HASH);
+                    long block = block(hash, blocks);
+                    MappedByteBuffer s = seg[(int) (block / BLOCKS_PER_SEGMENT)];
+                    int base = (int) (block % BLOCKS_PER_SEGMENT) * BLOCK;
+                    long x = bitSeed(hash);
+                    for (int j = 0; j < k; j++){
+                        x = nextBits(x);
+                        int bit = (int) (x >>> 55);
+                        int at = base + (bit >>> 6) * Long.BYTES;
+                        s.putLong(at, s.getLong(at) | 1L << bit);
+                    }
+                }
+                for (MappedByteBuffer s : seg)
+                    s.force();
+            }
+            return unique;
+        }
+
+        static void writeFully(FileChannel out, ByteBuffer buf, long pos) throws IOException {
+            while (buf.hasRemaining())
+                pos += out.write(buf, pos);
+        }
     }
 
+    // Result counters of a batch run
+    static final int RECORDS = 0, VALID = 1, UNICODE = 2, BREACHED = 3, RULE_COUNTS = 4;
 
-    public static void main(String [] args){
-        Scanner sc = new Scanner(System.in);
-        System.out.print("Enter password: ");
-        String pass = sc.nextLine();
+    static long[] newCounts(RuleSet rules){
+        return new long[RULE_COUNTS + rules.names.size()];
+    }
 
-        if(Password_Checker(pass)){
-            System.out.println("Valid");
+    // Checks every line of b[from..to), which holds whole lines only. With a
+    // breach list, a line that is in it is counted and not valid either.
+    static void checkLines(RuleSet rules, BreachList breach, byte b[], int from, int to, long counts[]){
+        int start = from;
+        for (int i = from; i <= to; i++){
+            if (i < to && b[i] != '\n')
+                continue;
+            int end = i > start && b[i - 1] == '\r' ? i - 1 : i;
+            if (i < to || end > start){     // no record after a final newline
+                int failed = rules.check(b, start, end);
+                if ((failed & DECODED) != 0){
+                    counts[UNICODE]++;
+                    failed &= ~DECODED;
+                }
+                boolean breached = breach != null && breach.contains(BreachList.sha1(b, start, end));
+                if (breached)
+                    counts[BREACHED]++;
+                counts[RECORDS]++;
+                if (failed == 0 && !breached)
+                    counts[VALID]++;
+                for (int r = 0; failed != 0; r++, failed >>>= 1)
+                    counts[RULE_COUNTS + r] += failed & 1;
+            }
+            start = i + 1;
         }
-        else{
-            System.out.print("Not Valid");
+    }
+
+    // Pieces of the file, in bytes, that one task reads and checks at a time
+    static final int PIECE = 8 << 20;
+
+    // Checks pieces [from, to) of the file, splitting in half down to one
+    // piece per task; every piece ends on a line boundary
+    static class BatchTask extends RecursiveTask<long[]> {
+        final RuleSet rules;
+        final BreachList breach;
+        final FileChannel ch;
+        final long bounds[];
+        final int from, to;
+
+        BatchTask(RuleSet rules, BreachList breach, FileChannel ch, long bounds[], int from, int to){
+            this.rules = rules;
+            this.breach = breach;
+            this.ch = ch;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected long[] compute(){
+            if (to - from > 1){
+                int mid = (from + to) >>> 1;
+                BatchTask left = new BatchTask(rules, breach, ch, bounds, from, mid);
+                left.fork();
+                long counts[] = new BatchTask(rules, breach, ch, bounds, mid, to).compute();
+                long other[] = left.join();
+                for (int i = 0; i < counts.length; i++)
+                    counts[i] += other[i];
+                return counts;
+            }
+            long counts[] = newCounts(rules);
+            ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(bounds[to] - bounds[from]));
+            try {
+                while (buf.hasRemaining())
+                    if (ch.read(buf, bounds[from] + buf.position()) < 0)
+                        throw new IOException("File shrank while reading");
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+            checkLines(rules, breach, buf.array(), 0, buf.limit(), counts);
+            return counts;
+        }
+    }
+
+    // Piece boundaries: every PIECE bytes, moved forward to just past the next '\n'
+    static long[] pieceBounds(FileChannel ch) throws IOException {
+        long size = ch.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long pos = 0;
+        while (size - pos > PIECE){
+            long p = pos + PIECE;
+            search:
+            while (p < size){
+                probe.clear();
+                int n = ch.read(probe, p);
+                for (int i = 0; i < n; i++)
+                    if (probe.get(i) == '\n'){
+                        p += i + 1;
+                        break search;
+                    }
+                p += n;
+            }
+            if (p >= size)
+                break;
+            bounds.add(p);
+            pos = p;
+        }
+        bounds.add(size);
+        long res[] = new long[bounds.size()];
+        for (int i = 0; i < res.length; i++)
+            res[i] = bounds.get(i);
+        return res;
+    }
+
+    // Checks every line of a UTF-8 file on the given number of threads
+    static long[] checkFile(Path file, int threads, RuleSet rules, BreachList breach) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)){
+            long bounds[] = pieceBounds(ch);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                return pool.invoke(new BatchTask(rules, breach, ch, bounds, 0, bounds.length - 1));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Writes count made-up passwords, one per line, for trying out --batch
+    static void writeSample(Path file, long count) throws IOException {
+        String chars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!_";
+        Random rnd = new Random(1);
+        StringBuilder sb = new StringBuilder();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+            for (long i = 0; i < count; i++){
+                sb.setLength(0);
+                int len = 6 + rnd.nextInt(12);
+                for (int k = 0; k < len; k++)
+                    sb.append(rnd.nextInt(50) == 0 ? chars.charAt(62 + rnd.nextInt(2)) : chars.charAt(rnd.nextInt(62)));
+                if (rnd.nextInt(100) == 0)
+                    sb.append((char) 0xE9);            // an accented letter
+                out.append(sb).append('\n');
+            }
+        }
+    }
+
+    // Times lookups in a breach list: hashes taken from the list itself, and
+    // made-up passwords that are not in it, which also give the measured
+    // false positive rate of the filter
+    static void breachBenchmark(Path prefix, int n) throws IOException {
+        long t0 = System.nanoTime();
+        try (BreachList list = new BreachList(prefix)){
+            long t1 = System.nanoTime();
+            System.out.printf("Opened %d hashes in %.3f ms: %d blocks, k = %d, %.1f bits per hash%n", list.count,
+                    (t1 - t0) / 1e6, list.blocks, list.k, list.bitsPerKey);
+            Random rnd = new Random(1);
+            byte members[][] = new byte[n][], others[][] = new byte[n][];
+            for (int i = 0; i < n; i++){
+                long at = (long) (rnd.nextDouble() * list.count);
+                members[i] = new byte[BreachList.HASH];
+                list.sorted[(int) (at / BreachList.RECORDS_PER_SEGMENT)]
+                        .get((int) (at % BreachList.RECORDS_PER_SEGMENT) * BreachList.HASH, members[i]);
+                others[i] = BreachList.sha1("not-breached-" + rnd.nextLong());
+            }
+            for (int round = 0; round < 3; round++){
+                long t2 = System.nanoTime();
+                int found = 0, maybe = 0, falsePositives = 0;
+                for (byte h[] : members)
+                    if (list.contains(h))
+                        found++;
+                long t3 = System.nanoTime();
+                for (byte h[] : others)
+                    if (list.mightContain(h)){
+                        maybe++;
+                        if (list.containsExact(h))
+                            found++;
+                        else
+                            falsePositives++;
+                    }
+                long t4 = System.nanoTime();
+                if (round == 2){
+                    System.out.printf("in the list:     %.0f ns per lookup (%d of %d found)%n",
+                            (double) (t3 - t2) / n, found, n);
+                    System.out.printf("not in the list: %.0f ns per lookup, filter said maybe %d times"
+                            + " (false positive rate %.5f)%n", (double) (t4 - t3) / n, maybe, (double) falsePositives / n);
+                }
+            }
+            long t5 = System.nanoTime();
+            for (int i = 0; i < n; i++)
+                BreachList.sha1("not-breached-" + i);
+            System.out.printf("SHA-1 of a password: %.0f ns%n", (double) (System.nanoTime() - t5) / n);
+        }
+    }
+
+    // Usage: java Valid_Password [OPTIONS]                         asks for a password
+    //        java Valid_Password [OPTIONS] --batch FILE [THREADS]  checks every line of FILE
+    //        java Valid_Password --gen FILE COUNT                  writes COUNT sample passwords
+    //        java Valid_Password --build-breach HASHES PREFIX [FPR]
+    //                                     builds PREFIX.bloom and PREFIX.sorted from a list of
+    //                                     SHA-1 hashes (or passwords), FPR defaulting to 0.01
+    //        java Valid_Password --breach-bench PREFIX N   times N lookups in a breach list
+    // OPTIONS: --rules CONFIG   rules to check instead of the original three
+    //          --breach PREFIX  also reject passwords found in that breach list
+    public static void main(String [] args) throws IOException {
+        RuleSet rules = RuleSet.DEFAULT;
+        Path breachPrefix = null;
+        while (args.length > 1 && (args[0].equals("--rules") || args[0].equals("--breach"))){
+            if (args[0].equals("--rules"))
+                rules = RuleSet.load(Paths.get(args[1]));
+            else
+                breachPrefix = Paths.get(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length > 2 && args[0].equals("--gen")){
+            writeSample(Paths.get(args[1]), Long.parseLong(args[2]));
+            return;
+        }
+        if (args.length > 2 && args[0].equals("--build-breach")){
+            double fpr = args.length > 3 ? Double.parseDouble(args[3]) : 0.01;
+            if (!(fpr > 0 && fpr < 1))
+                throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + fpr);
+            long t0 = System.nanoTime();
+            long unique = BreachList.build(Paths.get(args[1]), Paths.get(args[2]), fpr);
+            System.out.printf("%d distinct hashes written in %.3f s%n", unique, (System.nanoTime() - t0) / 1e9);
+            return;
+        }
+        if (args.length > 2 && args[0].equals("--breach-bench")){
+            breachBenchmark(Paths.get(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        // Opened only for the modes that use it; a null resource is simply not closed
+        try (BreachList breach = breachPrefix != null ? new BreachList(breachPrefix) : null){
+            if (args.length > 1 && args[0].equals("--batch")){
+                Path file = Paths.get(args[1]);
+                int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+                System.out.printf("%d rules, %d automaton states%n", rules.names.size(), rules.states());
+                long t0 = System.nanoTime();
+                long counts[] = checkFile(file, threads, rules, breach);
+                double seconds = (System.nanoTime() - t0) / 1e9;
+                System.out.printf("%d records, %d valid, %d rejected (%d not ASCII)%n", counts[RECORDS], counts[VALID],
+                        counts[RECORDS] - counts[VALID], counts[UNICODE]);
+                for (int r = 0; r < rules.names.size(); r++)
+                    System.out.printf("  %-40s %d%n", rules.names.get(r) + ":", counts[RULE_COUNTS + r]);
+                if (breach != null)
+                    System.out.printf("  %-40s %d%n", "in the breach list:", counts[BREACHED]);
+                System.out.printf("%d threads, %.3f s, %.1f M records/s (%.0f MB/s)%n", threads, seconds,
+                        counts[RECORDS] / seconds / 1e6, Files.size(file) / seconds / 1e6);
+                return;
+            }
+
+            Scanner sc = new Scanner(System.in);
+            System.out.print("Enter password: ");
+            String pass = sc.nextLine();
+
+            int failed = rules.check(pass);
+            boolean breached = breach != null && breach.contains(pass);
+            if(failed == 0 && !breached){
+                System.out.println("Valid");
+            }
+            else{
+                System.out.print("Not Valid:");
+                for (int r = 0; r < rules.names.size(); r++)
+                    if ((failed & 1 << r) != 0)
+                        System.out.print(" " + rules.names.get(r) + ";");
+                if (breached)
+                    System.out.print(" found in the breach list;");
+                System.out.println();
+            }
+            sc.close();
         }
-        sc.close();
     }
 }
@@ -1,17 +1,317 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class k_largest{
-    public static void main(String [] args){
+
+    // The k largest values seen so far, kept in a min-heap of plain ints: the
+    // root is the smallest of them, so a new value only gets in if it beats
+    // the root. O(log k) per value at most, O(k) memory.
+    static class TopK {
+        final int heap[];
+        int size;
+
+        TopK(int k){
+            if (k < 1)
+                throw new IllegalArgumentException("k must be >= 1: " + k);
+            heap = new int[k];
+        }
+
+        void offer(int v){
+            if (size < heap.length){
+                int i = size++;
+                while (i > 0 && heap[(i - 1) >>> 1] > v){
+                    heap[i] = heap[(i - 1) >>> 1];
+                    i = (i - 1) >>> 1;
+                }
+                heap[i] = v;
+            }
+            else if (v > heap[0])
+                replaceRoot(v);
+        }
+
+        void replaceRoot(int v){
+            int i = 0, half = size >>> 1;
+            while (i < half){
+                int c = 2 * i + 1;
+                if (c + 1 < size && heap[c + 1] < heap[c])
+                    c++;
+                if (heap[c] >= v)
+                    break;
+                heap[i] = heap[c];
+                i = c;
+            }
+            heap[i] = v;
+        }
+
+        // The values held, largest first
+        int[] sorted(){
+            return descending(Arrays.copyOf(heap, size));
+        }
+    }
+
+    static int[] descending(int a[]){
+        Arrays.sort(a);
+        for (int i = 0, j = a.length - 1; i < j; i++, j--){
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+        return a;
+    }
+
+    // Reorders a so that a[kth] holds the value it would have if a were
+    // sorted, with nothing larger before it and nothing smaller after it.
+    // Expected O(n): random pivots and a three-way partition, so runs of
+    // equal values don't slow it down.
+    static void quickselect(int a[], int kth){
+        int lo = 0, hi = a.length - 1;
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        while (lo < hi){
+            int pivot = a[lo + rnd.nextInt(hi - lo + 1)];
+            int lt = lo, i = lo, gt = hi;       // a[lo..lt) < pivot, a[lt..i) == pivot, a(gt..hi] > pivot
+            while (i <= gt){
+                int v = a[i];
+                if (v < pivot){
+                    a[i++] = a[lt];
+                    a[lt++] = v;
+                }
+                else if (v > pivot){
+                    a[i] = a[gt];
+                    a[gt--] = v;
+                }
+                else
+                    i++;
+            }
+            if (kth < lt)
+                hi = lt - 1;
+            else if (kth > gt)
+                lo = gt + 1;
+            else
+                return;
+        }
+    }
+
+    // The k largest values of a, largest first; a is reordered on the way
+    static int[] topK(int a[], int k){
+        k = Math.min(k, a.length);
+        if (k <= 0)
+            return new int[0];
+        quickselect(a, a.length - k);
+        return descending(Arrays.copyOfRange(a, a.length - k, a.length));
+    }
+
+    // Feeds every whitespace separated decimal int of the stream to top,
+    // parsing straight out of a byte buffer; returns how many were read
+    static long offerAll(InputStream in, TopK top) throws IOException {
+        byte buf[] = new byte[1 << 16];
+        long count = 0;
+        long value = 0;
+        boolean inNumber = false, negative = false;
+        int len;
+        while ((len = in.read(buf)) >= 0 || inNumber){
+            if (len < 0){                       // end of file: a newline flushes the last number
+                buf[0] = '\n';
+                len = 1;
+            }
+            for (int i = 0; i < len; i++){
+                int b = buf[i];
+                if (b >= '0' && b <= '9'){
+                    value = value * 10 + (b - '0');
+                    if (value > 1L << 31)
+                        throw new NumberFormatException("Not an int at number " + (count + 1));
+                    inNumber = true;
+                }
+                else if (b == '-' && !inNumber)
+                    negative = true;
+                else{
+                    if (inNumber){
+                        if (!negative && value > Integer.MAX_VALUE)
+                            throw new NumberFormatException("Not an int at number " + (count + 1));
+                        top.offer((int) (negative ? -value : value));
+                        count++;
+                    }
+                    value = 0;
+                    inNumber = false;
+                    negative = false;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Binary int files are little-endian 32-bit ints, mapped this many at a time
+    static final int WINDOW_INTS = 1 << 26;
+
+    // One worker's share of a binary int file: ints [from, to), scanned into
+    // a heap of its own so that workers never share anything until the merge
+    static class ScanTask extends RecursiveTask<TopK> {
+        final FileChannel ch;
+        final long from, to;
+        final int k;
+        long nanos;
+
+        ScanTask(FileChannel ch, long from, long to, int k){
+            this.ch = ch;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+        }
+
+        protected TopK compute(){
+            long t0 = System.nanoTime();
+            TopK top = new TopK(k);
+            try {
+                for (long pos = from; pos < to; pos += WINDOW_INTS){
+                    int n = (int) Math.min(WINDOW_INTS, to - pos);
+                    IntBuffer ints = ch.map(FileChannel.MapMode.READ_ONLY, pos * Integer.BYTES, (long) n * Integer.BYTES)
+                            .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                    for (int i = 0; i < n; i++)
+                        top.offer(ints.get(i));
+                }
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+            nanos = System.nanoTime() - t0;
+            return top;
+        }
+    }
+
+    // Timings of one parallelTopK run, in nanoseconds
+    static class Phases {
+        long setup, scan, merge, busyMin = Long.MAX_VALUE, busyMax, busyTotal;
+    }
+
+    // The k largest ints of a binary file, on the given number of threads.
+    // The file is cut into one contiguous range per thread; the per-thread
+    // heaps are merged by offering their contents to one more heap.
+    static TopK parallelTopK(Path file, int k, int threads, Phases phases) throws IOException {
+        long t0 = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)){
+            long count = ch.size() / Integer.BYTES;
+            ScanTask tasks[] = new ScanTask[threads];
+            for (int t = 0; t < threads; t++)
+                tasks[t] = new ScanTask(ch, count * t / threads, count * (t + 1) / threads, k);
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            long t1 = System.nanoTime();
+            TopK heaps[] = new TopK[threads];
+            try {
+                for (ScanTask task : tasks)
+                    pool.execute(task);
+                for (int t = 0; t < threads; t++)
+                    heaps[t] = tasks[t].join();
+            } finally {
+                pool.shutdown();
+            }
+            long t2 = System.nanoTime();
+            TopK top = new TopK(k);
+            for (TopK h : heaps)
+                for (int i = 0; i < h.size; i++)
+                    top.offer(h.heap[i]);
+            long t3 = System.nanoTime();
+
+            phases.setup = t1 - t0;
+            phases.scan = t2 - t1;
+            phases.merge = t3 - t2;
+            for (ScanTask task : tasks){
+                phases.busyMin = Math.min(phases.busyMin, task.nanos);
+                phases.busyMax = Math.max(phases.busyMax, task.nanos);
+                phases.busyTotal += task.nanos;
+            }
+            return top;
+        }
+    }
+
+    // Writes count random ints to a binary file, for trying out --parallel
+    static void writeRandom(Path file, long count) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        Random rnd = new Random(1);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            for (long i = 0; i < count; i++){
+                if (!buf.hasRemaining()){
+                    buf.flip();
+                    while (buf.hasRemaining())
+                        out.write(buf);
+                    buf.clear();
+                }
+                buf.putInt(rnd.nextInt());
+            }
+            buf.flip();
+            while (buf.hasRemaining())
+                out.write(buf);
+        }
+    }
+
+    // Usage: java k_largest                              asks for k
+    //        java k_largest --file PATH K                the K largest of the numbers in text file PATH
+    //        java k_largest --parallel PATH K [THREADS]  the K largest ints of binary file PATH, timed
+    //                                                    on 1, 2, 4, ... up to THREADS threads
+    //        java k_largest --gen PATH COUNT             writes COUNT random ints to binary file PATH
+    public static void main(String [] args) throws IOException {
+        if (args.length > 2 && args[0].equals("--gen")){
+            writeRandom(Paths.get(args[1]), Long.parseLong(args[2]));
+            return;
+        }
+        if (args.length > 2 && args[0].equals("--parallel")){
+            Path file = Paths.get(args[1]);
+            int k = Integer.parseInt(args[2]);
+            int maxThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            long baseline = 0;
+            for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)){
+                Phases ph = new Phases();
+                TopK top = parallelTopK(file, k, threads, ph);
+                long wall = ph.setup + ph.scan + ph.merge;
+                if (threads == 1){
+                    baseline = wall;
+                    System.out.println(top.size + " largest: " + Arrays.toString(top.sorted()));
+                }
+                System.out.printf("%2d threads: setup %.3f ms, scan %.1f ms (busy min/avg/max %.1f / %.1f / %.1f ms),"
+                        + " merge %.3f ms%n", threads, ph.setup / 1e6, ph.scan / 1e6, ph.busyMin / 1e6,
+                        ph.busyTotal / 1e6 / threads, ph.busyMax / 1e6, ph.merge / 1e6);
+                // Speedup over one thread, and that speedup per thread: 1.0 means linear scaling
+                System.out.printf("            wall %.1f ms, speedup %.2f, efficiency %.2f%n", wall / 1e6,
+                        (double) baseline / wall, (double) baseline / wall / threads);
+                if (threads >= maxThreads)
+                    break;
+            }
+            return;
+        }
+        if (args.length > 2 && args[0].equals("--file")){
+            TopK top = new TopK(Integer.parseInt(args[2]));
+            long t0 = System.nanoTime();
+            long count;
+            try (InputStream in = new FileInputStream(args[1])){
+                count = offerAll(in, top);
+            }
+            double seconds = (System.nanoTime() - t0) / 1e9;
+            System.out.println(top.size + " largest of " + count + " numbers: " + Arrays.toString(top.sorted()));
+            System.out.printf("Read in %.3f s (%.1f M numbers/s)%n", seconds, count / seconds / 1e6);
+            return;
+        }
+
         Scanner sc = new Scanner(System.in);
         int nums [] = {27, 56, 19, 01, 278, 76, 54, 89};
-        Arrays.sort(nums);
 
         int k = sc.nextInt();
 
-        System.out.println(k + " largest elements are: " );
-        for(int i = nums.length - 1; i >= nums.length - 3; i--){
-            System.out.print(nums[i] + " ");
+        int largest[] = topK(nums, k);
+        System.out.println(largest.length + " largest elements are: " );
+        for(int i = 0; i < largest.length; i++){
+            System.out.print(largest[i] + " ");
         }
         sc.close();
     }
-}
\ No newline at end of file
+}